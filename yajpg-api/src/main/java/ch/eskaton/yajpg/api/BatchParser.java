@@ -0,0 +1,185 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parses many independent inputs in parallel. The inputs are split into
+ * chunks which are parsed by the tasks of an executor. Each task takes one
+ * parser from a {@link ParserPool} and reuses it for its whole chunk, so
+ * parsers aren't bound to threads and the executor may as well use virtual
+ * threads as a fork-join pool.
+ */
+public class BatchParser {
+
+    /** Default count of inputs per task */
+    public static final int DEFAULT_CHUNK_SIZE = 64;
+
+    /** Pool of parsers */
+    private ParserPool pool;
+
+    /** Count of inputs per task */
+    private int chunkSize;
+
+    /**
+     * Constructor.
+     * 
+     * @param pool
+     *            Pool of parsers
+     */
+    public BatchParser(ParserPool pool) {
+        this(pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param pool
+     *            Pool of parsers
+     * @param chunkSize
+     *            Count of inputs per task
+     */
+    public BatchParser(ParserPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Invalid chunk size: "
+                    + chunkSize);
+        }
+
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Parses all inputs and waits until they are parsed. Syntax errors don't
+     * abort the batch but are returned in the result of the respective input.
+     * 
+     * @param inputs
+     *            The inputs to parse
+     * @param executor
+     *            Executor which runs the tasks
+     * @return The results in the order of the inputs
+     * @throws ParserInstantiationException
+     *             if a parser can't be instantiated
+     * @throws IOException
+     *             if an input can't be read
+     * @throws InterruptedException
+     *             if the thread is interrupted while waiting for the tasks
+     */
+    public List<ParseResult> parseAll(
+            Collection<? extends CharSequence> inputs, Executor executor)
+            throws ParserInstantiationException, IOException,
+            InterruptedException {
+        final CharSequence[] batch = inputs.toArray(new CharSequence[inputs
+                .size()]);
+        final ParseResult[] results = new ParseResult[batch.length];
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        int chunks = (batch.length + chunkSize - 1) / chunkSize;
+        final CountDownLatch done = new CountDownLatch(chunks);
+
+        for (int i = 0; i < chunks; i++) {
+            final int from = i * chunkSize;
+            final int to = Math.min(from + chunkSize, batch.length);
+
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        parseChunk(batch, results, from, to, failure);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        done.await();
+
+        Throwable ex = failure.get();
+
+        if (ex instanceof ParserInstantiationException) {
+            throw (ParserInstantiationException) ex;
+        } else if (ex instanceof IOException) {
+            throw (IOException) ex;
+        } else if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        } else if (ex instanceof Error) {
+            throw (Error) ex;
+        } else if (ex != null) {
+            throw new RuntimeException(ex);
+        }
+
+        return new ArrayList<ParseResult>(Arrays.asList(results));
+    }
+
+    /**
+     * Parses a chunk of inputs with one parser. A chunk is skipped if
+     * another chunk has already failed. The parser is returned to the pool
+     * in any case, since a parse which is aborted by an exception is ended
+     * by the parser.
+     * 
+     * @param batch
+     *            All inputs
+     * @param results
+     *            All results
+     * @param from
+     *            Index of the first input of the chunk
+     * @param to
+     *            Index after the last input of the chunk
+     * @param failure
+     *            The first failure of a chunk
+     */
+    private void parseChunk(CharSequence[] batch, ParseResult[] results,
+            int from, int to, AtomicReference<Throwable> failure) {
+        ResettableParser<?> parser = null;
+
+        try {
+            if (failure.get() != null) {
+                return;
+            }
+
+            parser = pool.acquire();
+
+            for (int i = from; i < to; i++) {
+                results[i] = parser.tryParse(batch[i].toString());
+            }
+        } catch (Throwable ex) {
+            failure.compareAndSet(null, ex);
+        } finally {
+            if (parser != null) {
+                pool.release(parser);
+            }
+        }
+    }
+
+}
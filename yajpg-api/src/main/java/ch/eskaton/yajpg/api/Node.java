@@ -46,6 +46,11 @@ public abstract class Node {
      */
     protected Node rNode;
 
+    /**
+     * Set if the node must not be modified anymore.
+     */
+    private boolean frozen;
+
     /**
      * Returns the node type.
      * 
@@ -73,6 +78,40 @@ public abstract class Node {
         return rNode;
     }
 
+    /**
+     * Marks this node and all its descendants as immutable, e.g. before the
+     * tree is shared between threads. Subclasses with mutators must call
+     * {@link #checkMutable()} before they modify a node.
+     */
+    public void freeze() {
+        traversePostOrder(new NodeVisitor() {
+            public void visit(Node node) {
+                node.frozen = true;
+            }
+        });
+    }
+
+    /**
+     * Returns whether the node is immutable.
+     * 
+     * @return True, if the node has been frozen
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Ensures that the node hasn't been frozen.
+     * 
+     * @throws IllegalStateException
+     *             if the node has been frozen
+     */
+    protected void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("The node is immutable");
+        }
+    }
+
     /**
      * Traverses a syntax tree and calls a {@link NodeVisitor} on every node.
      * 
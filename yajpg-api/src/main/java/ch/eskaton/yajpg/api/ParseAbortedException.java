@@ -0,0 +1,76 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg.api;
+
+/**
+ * Thrown if a parse exceeds one of its {@link ParseLimits} or is cancelled.
+ * Unlike a syntax error, the input may be valid.
+ */
+@SuppressWarnings("serial")
+public class ParseAbortedException extends StacklessParseException {
+
+    /**
+     * Reasons to abort a parse.
+     */
+    public enum Reason {
+        TOKENS("Limit of %d tokens exceeded"),
+        DEPTH("Limit of %d states on the stack exceeded"),
+        INPUT_LENGTH("Limit of %d characters of input exceeded"),
+        TIMEOUT("Timeout of %d ms exceeded"),
+        INTERRUPTED("Parse interrupted");
+
+        private String format;
+
+        private Reason(String format) {
+            this.format = format;
+        }
+
+    }
+
+    /* Reason to abort the parse */
+    private Reason reason;
+
+    /**
+     * Constructor.
+     * 
+     * @param reason
+     *            Reason to abort the parse
+     * @param position
+     *            Position in the input at which the parse has been aborted
+     * @param limit
+     *            The exceeded limit
+     */
+    public ParseAbortedException(Reason reason, int position, long limit) {
+        super(position, reason.format, limit);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+}
@@ -0,0 +1,266 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg.api;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of parse results with least-recently-used eviction. Entries are
+ * keyed by the parser class, which identifies the grammar, and the input.
+ * The cache is bounded by the count of entries and optionally by the total
+ * length of the cached inputs.
+ * <p>
+ * The syntax trees of cached results are frozen and returned to every caller
+ * which parses the same input. The cache may be shared between threads.
+ */
+public class ParseCache {
+
+    /** Cached results in access order */
+    private LinkedHashMap<Key, ParseResult> entries = new LinkedHashMap<Key, ParseResult>(
+            16, 0.75f, true);
+
+    /** Maximum count of entries */
+    private int maxEntries;
+
+    /** Maximum total length of the cached inputs */
+    private long maxWeight;
+
+    /** Total length of the cached inputs */
+    private long weight;
+
+    /** Count of lookups which found a result */
+    private long hits;
+
+    /** Count of lookups which didn't find a result */
+    private long misses;
+
+    /** Count of evicted entries */
+    private long evictions;
+
+    /**
+     * Creates a cache which is bounded by the count of entries.
+     * 
+     * @param maxEntries
+     *            Maximum count of entries
+     */
+    public ParseCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a cache which is bounded by the count of entries and the total
+     * length of the cached inputs.
+     * 
+     * @param maxEntries
+     *            Maximum count of entries
+     * @param maxWeight
+     *            Maximum total length of the cached inputs
+     */
+    public ParseCache(int maxEntries, long maxWeight) {
+        if (maxEntries < 1 || maxWeight < 1) {
+            throw new IllegalArgumentException("Invalid cache size");
+        }
+
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Parses {@code input} with a pooled parser unless the result is already
+     * cached.
+     * 
+     * @param pool
+     *            Pool of parsers
+     * @param input
+     *            The input to parse
+     * @return Root node of the syntax tree
+     * @throws ParserInstantiationException
+     * @throws ParseException
+     * @throws IOException
+     */
+    public Node parse(ParserPool pool, String input)
+            throws ParserInstantiationException, ParseException, IOException {
+        ParseResult result = tryParse(pool, input);
+
+        if (!result.isSuccess()) {
+            throw result.getError();
+        }
+
+        return result.getRoot();
+    }
+
+    /**
+     * Parses {@code input} with a pooled parser unless the result is already
+     * cached. Syntax errors are cached as well and returned instead of
+     * thrown. A parse which has been aborted isn't cached, since the input
+     * may be valid.
+     * 
+     * @param pool
+     *            Pool of parsers
+     * @param input
+     *            The input to parse
+     * @return The root node of the syntax tree or the syntax error
+     * @throws ParserInstantiationException
+     * @throws IOException
+     */
+    public ParseResult tryParse(ParserPool pool, String input)
+            throws ParserInstantiationException, IOException {
+        Key key = new Key(pool.getParserClass(), input);
+        ParseResult result;
+
+        synchronized (this) {
+            result = entries.get(key);
+
+            if (result != null) {
+                hits++;
+                return result;
+            }
+
+            misses++;
+        }
+
+        /* Parse outside of the lock, concurrent misses may parse twice */
+        result = pool.tryParse(input);
+
+        if (result.getRoot() != null) {
+            result.getRoot().freeze();
+        }
+
+        if (result.getError() instanceof ParseAbortedException) {
+            return result;
+        }
+
+        synchronized (this) {
+            if (entries.put(key, result) == null) {
+                weight += input.length();
+            }
+
+            evict();
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes the least recently used entries until the cache is within its
+     * bounds.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Key, ParseResult>> it = entries.entrySet()
+                .iterator();
+
+        while ((entries.size() > maxEntries || weight > maxWeight)
+                && it.hasNext()) {
+            weight -= it.next().getKey().input.length();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes all entries. The statistics are retained.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Returns the count of cached results.
+     * 
+     * @return Count of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the count of lookups which found a cached result.
+     * 
+     * @return Count of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the count of lookups which didn't find a cached result.
+     * 
+     * @return Count of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the count of entries which have been evicted.
+     * 
+     * @return Count of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Key of a cache entry.
+     */
+    private static class Key {
+
+        private Class<?> grammar;
+
+        private String input;
+
+        private int hash;
+
+        Key(Class<?> grammar, String input) {
+            this.grammar = grammar;
+            this.input = input;
+            this.hash = 31 * grammar.hashCode() + input.hashCode();
+        }
+
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+
+            Key key = (Key) o;
+
+            return hash == key.hash && grammar == key.grammar
+                    && input.equals(key.input);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
@@ -0,0 +1,230 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg.api;
+
+/**
+ * Limits of the resources which a single parse may use: the count of
+ * tokens, the depth of the parser's stack, the length of the input and the
+ * time. A parse can also be cancelled by interrupting its thread. A parse
+ * which exceeds a limit is aborted with a {@link ParseAbortedException}.
+ * <p>
+ * The limits are immutable and may be shared between parsers and threads.
+ * The count of tokens is checked for every token, the time and interruption
+ * only every {@link #CHECK_INTERVAL} tokens.
+ */
+public class ParseLimits {
+
+    /** No limits */
+    public static final ParseLimits NONE = new ParseLimits(Integer.MAX_VALUE,
+            Integer.MAX_VALUE, Integer.MAX_VALUE, 0, false);
+
+    /** Count of tokens between two checks of the time and interruption */
+    public static final int CHECK_INTERVAL = 256;
+
+    /* Maximum count of tokens */
+    private int maxTokens;
+
+    /* Maximum count of states on the stack */
+    private int maxDepth;
+
+    /* Maximum length of the input */
+    private int maxInputLength;
+
+    /* Maximum duration of a parse in milliseconds, 0 if unlimited */
+    private long timeout;
+
+    /* Abort the parse if its thread is interrupted? */
+    private boolean interruption;
+
+    private ParseLimits(int maxTokens, int maxDepth, int maxInputLength,
+            long timeout, boolean interruption) {
+        this.maxTokens = maxTokens;
+        this.maxDepth = maxDepth;
+        this.maxInputLength = maxInputLength;
+        this.timeout = timeout;
+        this.interruption = interruption;
+    }
+
+    /**
+     * Returns limits with another maximum count of tokens.
+     * 
+     * @param maxTokens
+     *            Maximum count of tokens including EOF. Generated lexers
+     *            and the inlined lexer of a fused parser also count the
+     *            skipped tokens.
+     * @return The new limits
+     */
+    public ParseLimits withMaxTokens(int maxTokens) {
+        checkPositive(maxTokens);
+
+        return new ParseLimits(maxTokens, maxDepth, maxInputLength, timeout,
+                interruption);
+    }
+
+    /**
+     * Returns limits with another maximum depth of the parser's stack. The
+     * depth grows with the nesting of the input.
+     * 
+     * @param maxDepth
+     *            Maximum count of states on the stack
+     * @return The new limits
+     */
+    public ParseLimits withMaxDepth(int maxDepth) {
+        checkPositive(maxDepth);
+
+        return new ParseLimits(maxTokens, maxDepth, maxInputLength, timeout,
+                interruption);
+    }
+
+    /**
+     * Returns limits with another maximum length of the input. The length is
+     * only known if the input is passed as a string.
+     * 
+     * @param maxInputLength
+     *            Maximum count of characters
+     * @return The new limits
+     */
+    public ParseLimits withMaxInputLength(int maxInputLength) {
+        checkPositive(maxInputLength);
+
+        return new ParseLimits(maxTokens, maxDepth, maxInputLength, timeout,
+                interruption);
+    }
+
+    /**
+     * Returns limits with another maximum duration of a parse.
+     * 
+     * @param timeout
+     *            Maximum duration in milliseconds, 0 if unlimited
+     * @return The new limits
+     */
+    public ParseLimits withTimeout(long timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Negative timeout: " + timeout);
+        }
+
+        return new ParseLimits(maxTokens, maxDepth, maxInputLength, timeout,
+                interruption);
+    }
+
+    /**
+     * Returns limits which abort a parse if its thread is interrupted or
+     * not. The interrupted status of the thread is retained.
+     * 
+     * @param interruption
+     *            Abort the parse if its thread is interrupted?
+     * @return The new limits
+     */
+    public ParseLimits withInterruption(boolean interruption) {
+        return new ParseLimits(maxTokens, maxDepth, maxInputLength, timeout,
+                interruption);
+    }
+
+    private static void checkPositive(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive: "
+                    + limit);
+        }
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxInputLength() {
+        return maxInputLength;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public boolean isInterruption() {
+        return interruption;
+    }
+
+    /**
+     * Returns the deadline of a parse which starts now.
+     * 
+     * @return Deadline in terms of {@link System#nanoTime()}, 0 if the time
+     *         is unlimited
+     */
+    public long getDeadline() {
+        if (timeout == 0) {
+            return 0;
+        }
+
+        long deadline = System.nanoTime() + timeout * 1000000;
+
+        return deadline == 0 ? 1 : deadline;
+    }
+
+    /**
+     * Checks whether a parse has to be aborted because of its deadline or
+     * because its thread has been interrupted.
+     * 
+     * @param deadline
+     *            Deadline of the parse from {@link #getDeadline()}
+     * @param position
+     *            Current position in the input
+     * @throws ParseAbortedException
+     *             if the parse has to be aborted
+     */
+    public void checkTime(long deadline, int position)
+            throws ParseAbortedException {
+        if (interruption && Thread.currentThread().isInterrupted()) {
+            throw new ParseAbortedException(
+                    ParseAbortedException.Reason.INTERRUPTED, position, 0);
+        }
+
+        if (deadline != 0 && System.nanoTime() - deadline > 0) {
+            throw new ParseAbortedException(
+                    ParseAbortedException.Reason.TIMEOUT, position, timeout);
+        }
+    }
+
+    /**
+     * Checks the length of the input.
+     * 
+     * @param length
+     *            Length of the input
+     * @throws ParseAbortedException
+     *             if the input is too long
+     */
+    public void checkInputLength(int length) throws ParseAbortedException {
+        if (length > maxInputLength) {
+            throw new ParseAbortedException(
+                    ParseAbortedException.Reason.INPUT_LENGTH, maxInputLength,
+                    maxInputLength);
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg.api;
+
+/**
+ * Result of a parse which doesn't throw an exception on syntax errors. It
+ * contains either the root node of the syntax tree or the error.
+ */
+public class ParseResult {
+
+    /* Root node of the syntax tree */
+    private Node root;
+
+    /* The syntax error */
+    private ParseException error;
+
+    /**
+     * Creates the result of a successful parse.
+     * 
+     * @param root
+     *            Root node of the syntax tree
+     */
+    public ParseResult(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Creates the result of a failed parse.
+     * 
+     * @param error
+     *            The syntax error
+     */
+    public ParseResult(ParseException error) {
+        this.error = error;
+    }
+
+    /**
+     * Returns whether the input was parsed successfully.
+     * 
+     * @return True, if there was no syntax error
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Returns the root node of the syntax tree.
+     * 
+     * @return The root node or null, if the parse failed
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the syntax error.
+     * 
+     * @return The error or null, if the parse was successful
+     */
+    public ParseException getError() {
+        return error;
+    }
+
+}
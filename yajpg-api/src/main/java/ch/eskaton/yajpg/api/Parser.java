@@ -30,9 +30,12 @@ import java.io.IOException;
 
 /**
  * Interface to be implemented by parsers.
+ * 
+ * @param <T>
+ *            Type of the root node of the syntax tree
  */
-public interface Parser {
+public interface Parser<T extends Node> {
 
-    public Node parse() throws ParseException, IOException;
+    public T parse() throws ParseException, IOException;
 
 }
@@ -33,14 +33,40 @@ import java.lang.reflect.Constructor;
  */
 public class ParserFactory {
 
-    public static Parser create(String clazz, Lexer lexer)
+    public static Parser<?> create(String clazz, Lexer lexer)
             throws ParserInstantiationException {
         try {
             Class<?> parser = Thread.currentThread().getContextClassLoader()
                     .loadClass(clazz);
             Constructor<?> constructor = parser
                     .getDeclaredConstructor(Lexer.class);
-            return (Parser) constructor.newInstance(lexer);
+            return (Parser<?>) constructor.newInstance(lexer);
+        } catch (Exception ex) {
+            throw new ParserInstantiationException(ex);
+        }
+    }
+
+    /**
+     * Creates a pool of reusable parsers. Both classes must have been
+     * generated by YAJPG or implement {@link ResettableParser} and
+     * {@link ResettableLexer} respectively.
+     * 
+     * @param parserClazz
+     *            Name of the parser class
+     * @param lexerClazz
+     *            Name of the lexer class
+     * @return A parser pool
+     * @throws ParserInstantiationException
+     */
+    public static ParserPool createPool(String parserClazz, String lexerClazz)
+            throws ParserInstantiationException {
+        try {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            Constructor<?> parserConstructor = loader.loadClass(parserClazz)
+                    .getDeclaredConstructor(Lexer.class);
+            Constructor<?> lexerConstructor = loader.loadClass(lexerClazz)
+                    .getDeclaredConstructor(String.class);
+            return new ParserPool(parserConstructor, lexerConstructor);
         } catch (Exception ex) {
             throw new ParserInstantiationException(ex);
         }
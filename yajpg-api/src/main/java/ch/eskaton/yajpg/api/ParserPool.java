@@ -0,0 +1,167 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg.api;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A pool of reusable parsers, each with its own lexer. Pooled parsers are
+ * reset instead of instantiated for every input.
+ * <p>
+ * The pool may be shared between threads, a parser taken from the pool must
+ * only be used by one thread until it is released.
+ */
+public class ParserPool {
+
+    /** Constructor of the parser class */
+    private Constructor<?> parserConstructor;
+
+    /** Constructor of the lexer class */
+    private Constructor<?> lexerConstructor;
+
+    /** Idle parsers */
+    private Queue<ResettableParser<?>> parsers = new ConcurrentLinkedQueue<ResettableParser<?>>();
+
+    ParserPool(Constructor<?> parserConstructor,
+            Constructor<?> lexerConstructor) {
+        this.parserConstructor = parserConstructor;
+        this.lexerConstructor = lexerConstructor;
+    }
+
+    /**
+     * Returns the class of the pooled parsers.
+     * 
+     * @return The parser class
+     */
+    Class<?> getParserClass() {
+        return parserConstructor.getDeclaringClass();
+    }
+
+    /**
+     * Takes a parser from the pool. A new parser is instantiated if the pool
+     * is empty.
+     * 
+     * @return A parser
+     * @throws ParserInstantiationException
+     */
+    public ResettableParser<?> acquire() throws ParserInstantiationException {
+        ResettableParser<?> parser = parsers.poll();
+
+        if (parser != null) {
+            return parser;
+        }
+
+        try {
+            Lexer lexer = (Lexer) lexerConstructor.newInstance("");
+            return (ResettableParser<?>) parserConstructor.newInstance(lexer);
+        } catch (Exception ex) {
+            throw new ParserInstantiationException(ex);
+        }
+    }
+
+    /**
+     * Returns a parser to the pool. This includes parsers whose last parse
+     * has thrown an exception, since generated parsers end an aborted parse
+     * and keep no symbols of it.
+     * 
+     * @param parser
+     *            A parser which has been acquired from this pool
+     */
+    public void release(ResettableParser<?> parser) {
+        parsers.offer(parser);
+    }
+
+    /**
+     * Parses {@code input} with a pooled parser.
+     * 
+     * @param input
+     *            The input to parse
+     * @return Root node of the syntax tree
+     * @throws ParserInstantiationException
+     * @throws ParseException
+     * @throws IOException
+     */
+    public Node parse(String input) throws ParserInstantiationException,
+            ParseException, IOException {
+        ResettableParser<?> parser = acquire();
+
+        try {
+            return parser.parse(input);
+        } finally {
+            release(parser);
+        }
+    }
+
+    /**
+     * Parses {@code input} with a pooled parser. A syntax error is returned
+     * instead of thrown.
+     * 
+     * @param input
+     *            The input to parse
+     * @return The root node of the syntax tree or the syntax error
+     * @throws ParserInstantiationException
+     * @throws IOException
+     */
+    public ParseResult tryParse(String input)
+            throws ParserInstantiationException, IOException {
+        ResettableParser<?> parser = acquire();
+
+        try {
+            return parser.tryParse(input);
+        } finally {
+            release(parser);
+        }
+    }
+
+    /**
+     * Checks with a pooled parser whether {@code input} is syntactically
+     * valid.
+     * 
+     * @param input
+     *            The input to check
+     * @return true if the input is valid
+     * @throws ParserInstantiationException
+     * @throws IOException
+     * @throws ParseAbortedException
+     *             if the parse exceeds its limits
+     */
+    public boolean recognize(String input)
+            throws ParserInstantiationException, IOException,
+            ParseAbortedException {
+        ResettableParser<?> parser = acquire();
+
+        try {
+            return parser.recognize(input);
+        } finally {
+            release(parser);
+        }
+    }
+
+}
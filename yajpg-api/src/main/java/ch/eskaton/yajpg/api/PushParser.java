@@ -0,0 +1,65 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg.api;
+
+/**
+ * A parser which is fed with tokens one at a time instead of pulling them
+ * from a lexer. The parser's stack is retained between calls to
+ * {@link #offer(Token)}, so a parse can be suspended until more input is
+ * available.
+ */
+public interface PushParser {
+
+    /**
+     * Offers the next token to the parser. The first token after a parse has
+     * been accepted or rejected starts a new parse. The end of the input must
+     * be signaled with an EOF token.
+     * 
+     * @param token
+     *            The next token
+     * @return NEED_MORE if the token has been consumed, ACCEPTED if the input
+     *         has been parsed or ERROR if it is invalid
+     * @throws ParseException
+     */
+    public PushStatus offer(Token token) throws ParseException;
+
+    /**
+     * Returns the root node of the syntax tree after the input has been
+     * accepted.
+     * 
+     * @return Root node of the syntax tree
+     */
+    public Node getResult();
+
+    /**
+     * Returns the syntax error which terminated the last parse.
+     * 
+     * @return The syntax error or null
+     */
+    public ParseException getSyntaxError();
+
+}
@@ -0,0 +1,253 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg.api;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the nodes of selected non-terminals, e.g. one per top-level
+ * statement, while the input is parsed. Tokens are only read from the lexer
+ * while the subscriber has outstanding demand, so a slow subscriber pauses
+ * the parse instead of letting the nodes accumulate. Published nodes are
+ * removed from the parser's stack, so the memory of the parse is bounded by
+ * the nesting of the input instead of its length. The rules which contain a
+ * published non-terminal receive null instead of its node. Values which
+ * aren't nodes, e.g. of non-terminals with a primitive type or null, aren't
+ * published and remain on the parser's stack.
+ * <p>
+ * The parse runs on the thread which calls {@link Flow.Subscription#request}
+ * and ends with {@code onComplete} if the input is accepted or
+ * {@code onError} with the syntax error otherwise. A publisher parses its
+ * input once and accepts only one subscriber. If the subscription is
+ * cancelled before the end of the input, the parser must be reset before it
+ * is used again.
+ */
+public class ReductionPublisher implements Flow.Publisher<Node> {
+
+    /** The parser */
+    private ObservableParser parser;
+
+    /** The lexer which provides the tokens */
+    private Lexer lexer;
+
+    /** Names of the published non-terminals */
+    private String[] nonTerminals;
+
+    /** Set as soon as the publisher has a subscriber */
+    private AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Constructor.
+     * 
+     * @param parser
+     *            A parser which isn't used otherwise during the parse
+     * @param lexer
+     *            The lexer which provides the tokens
+     * @param nonTerminals
+     *            Names of the non-terminals to publish
+     * @throws IllegalArgumentException
+     *             if a non-terminal doesn't exist in the grammar
+     */
+    public ReductionPublisher(ObservableParser parser, Lexer lexer,
+            String... nonTerminals) {
+        this.parser = parser;
+        this.lexer = lexer;
+        this.nonTerminals = nonTerminals.clone();
+
+        /* Validate the non-terminals early */
+        parser.setReductionListener(null, nonTerminals);
+    }
+
+    public void subscribe(Flow.Subscriber<? super Node> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                public void request(long n) {
+                }
+
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException(
+                    "The publisher already has a subscriber"));
+            return;
+        }
+
+        ReductionSubscription subscription = new ReductionSubscription(
+                subscriber);
+
+        parser.setReductionListener(subscription, nonTerminals);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * Subscription which drives the parser. Only one thread at a time drains
+     * the parser, requests from other threads or from within
+     * {@code onNext} are picked up by the draining thread.
+     */
+    private class ReductionSubscription implements Flow.Subscription,
+            ReductionListener {
+
+        /** The subscriber */
+        private Flow.Subscriber<? super Node> subscriber;
+
+        /** Nodes which have been reduced but not yet published */
+        private Queue<Node> pending = new ArrayDeque<Node>();
+
+        /** Outstanding demand of the subscriber */
+        private AtomicLong demand = new AtomicLong();
+
+        /** Count of requests which are waiting for the draining thread */
+        private AtomicInteger work = new AtomicInteger();
+
+        /** Status of the parse */
+        private PushStatus status = PushStatus.NEED_MORE;
+
+        /** Error to signal to the subscriber */
+        private volatile Throwable error;
+
+        /** Set after cancel or after the subscriber has been signaled */
+        private volatile boolean done;
+
+        ReductionSubscription(Flow.Subscriber<? super Node> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException(
+                        "Requested count must be positive: " + n);
+            } else {
+                long current;
+
+                do {
+                    current = demand.get();
+                } while (!demand.compareAndSet(current,
+                        current + n < 0 ? Long.MAX_VALUE : current + n));
+            }
+
+            drain();
+        }
+
+        public void cancel() {
+            done = true;
+            drain();
+        }
+
+        public Object reduced(String nonTerminal, Object symbol) {
+            if (!(symbol instanceof Node)) {
+                return symbol;
+            }
+
+            pending.add((Node) symbol);
+
+            /* The node is released by the parser once it is published */
+            return null;
+        }
+
+        /**
+         * Publishes the pending nodes and parses further tokens as long as
+         * there is demand.
+         */
+        private void drain() {
+            int missed = 1;
+
+            if (work.getAndIncrement() != 0) {
+                return;
+            }
+
+            do {
+                while (!done) {
+                    if (error != null) {
+                        terminate();
+                        subscriber.onError(error);
+                    } else if (!pending.isEmpty()) {
+                        if (demand.get() == 0) {
+                            break;
+                        }
+
+                        if (demand.get() != Long.MAX_VALUE) {
+                            demand.decrementAndGet();
+                        }
+
+                        subscriber.onNext(pending.poll());
+                    } else if (status == PushStatus.ACCEPTED) {
+                        terminate();
+                        subscriber.onComplete();
+                    } else if (demand.get() == 0) {
+                        break;
+                    } else {
+                        parse();
+                    }
+                }
+
+                if (done) {
+                    terminate();
+                }
+
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Offers the next token to the parser.
+         */
+        private void parse() {
+            try {
+                status = parser.offer(lexer.nextToken());
+
+                if (status == PushStatus.ERROR) {
+                    error = parser.getSyntaxError();
+                }
+            } catch (ParseException e) {
+                error = e;
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+        /**
+         * Ends the subscription and releases the parser.
+         */
+        private void terminate() {
+            done = true;
+            pending.clear();
+            parser.setReductionListener(null);
+        }
+
+    }
+
+}
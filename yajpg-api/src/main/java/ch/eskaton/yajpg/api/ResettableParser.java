@@ -0,0 +1,85 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg.api;
+
+import java.io.IOException;
+
+/**
+ * A parser which can be reused for another input. The parser's stack is
+ * retained between parses.
+ */
+public interface ResettableParser<T extends Node> extends Parser<T> {
+
+    /**
+     * Resets the parser to read from another lexer.
+     * 
+     * @param lexer
+     *            A lexer
+     */
+    public void reset(Lexer lexer);
+
+    /**
+     * Resets the parser's lexer to {@code input} and parses it. The lexer
+     * must implement {@link ResettableLexer}.
+     * 
+     * @param input
+     *            The input to parse
+     * @return Root node of the syntax tree
+     * @throws ParseException
+     * @throws IOException
+     */
+    public T parse(String input) throws ParseException, IOException;
+
+    /**
+     * Resets the parser's lexer to {@code input} and parses it. A syntax
+     * error is returned instead of thrown. The lexer must implement
+     * {@link ResettableLexer}.
+     * 
+     * @param input
+     *            The input to parse
+     * @return The root node of the syntax tree or the syntax error
+     * @throws IOException
+     */
+    public ParseResult tryParse(String input) throws IOException;
+
+    /**
+     * Resets the parser's lexer to {@code input} and checks whether it is
+     * syntactically valid without building a syntax tree. The lexer must
+     * implement {@link ResettableLexer}.
+     * 
+     * @param input
+     *            The input to check
+     * @return true if the input is valid
+     * @throws IOException
+     * @throws ParseAbortedException
+     *             if the parse exceeds its limits, which doesn't tell
+     *             whether the input is valid
+     */
+    public boolean recognize(String input) throws IOException,
+            ParseAbortedException;
+
+}
@@ -0,0 +1,84 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg.api;
+
+/**
+ * A {@link ParseException} without a stack trace whose message is only
+ * formatted when it is requested. Generated lexers and parsers report syntax
+ * errors with it, so that rejecting invalid input costs about as much as
+ * parsing valid input.
+ */
+@SuppressWarnings("serial")
+public class StacklessParseException extends ParseException {
+
+    /* Format of the message */
+    private String format;
+
+    /* Arguments of the message */
+    private Object[] args;
+
+    /* The formatted message */
+    private String message;
+
+    /**
+     * Constructor.
+     * 
+     * @param position
+     *            Error position
+     * @param format
+     *            Format of the message, see {@link String#format}
+     * @param args
+     *            Arguments of the message, which must not be modified
+     *            afterwards
+     */
+    public StacklessParseException(int position, String format,
+            Object... args) {
+        super(position);
+        this.format = format;
+        this.args = args;
+    }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = String.format(format, args);
+        }
+
+        return message;
+    }
+
+    /**
+     * Doesn't fill in the stack trace.
+     * 
+     * @return This exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg.example;
+
+import java.io.IOException;
+import java.util.Random;
+
+import ch.eskaton.yajpg.api.ParseException;
+import ch.eskaton.yajpg.api.ResettableParser;
+import ch.eskaton.yajpg.example.parser.CalcDirectParser;
+import ch.eskaton.yajpg.example.parser.CalcEvalParser;
+import ch.eskaton.yajpg.example.parser.CalcLexer;
+import ch.eskaton.yajpg.example.parser.CalcNode;
+import ch.eskaton.yajpg.example.parser.CalcParser;
+
+/**
+ * Compares the throughput of the table-driven and the direct-coded parser
+ * generated from the same grammar and of a parser which evaluates the
+ * expressions while parsing with an inlined lexer.
+ */
+public class CalcBenchmark {
+
+    private static final int EXPRESSIONS = 10000;
+
+    private static final int ROUNDS = 10;
+
+    private static final char[] OPERATORS = { '+', '-', '*', '/' };
+
+    public static void main(String[] args) throws ParseException, IOException {
+        String[] expressions = createExpressions(new Random(42));
+        ResettableParser<CalcNode> tableParser = new CalcParser(new CalcLexer(""));
+        ResettableParser<CalcNode> directParser = new CalcDirectParser(new CalcLexer(""));
+        CalcEvalParser evalParser = new CalcEvalParser();
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long table = run(tableParser, expressions);
+            long direct = run(directParser, expressions);
+            long eval = evaluate(evalParser, expressions);
+
+            System.out.printf("Round %2d: table %,10d parses/s,"
+                    + " direct %,10d parses/s, eval %,10d parses/s%n", round,
+                    table, direct, eval);
+        }
+    }
+
+    /**
+     * Parses all expressions once.
+     * 
+     * @return Parses per second
+     */
+    private static long run(ResettableParser<CalcNode> parser, String[] expressions)
+            throws ParseException, IOException {
+        long start = System.nanoTime();
+
+        for (String expression : expressions) {
+            if (parser.parse(expression) == null) {
+                throw new IllegalStateException("No result for " + expression);
+            }
+        }
+
+        return expressions.length * 1000000000L / (System.nanoTime() - start);
+    }
+
+    /**
+     * Evaluates all expressions once without building syntax trees.
+     * 
+     * @return Parses per second
+     */
+    private static long evaluate(CalcEvalParser parser, String[] expressions)
+            throws ParseException, IOException {
+        long start = System.nanoTime();
+
+        for (String expression : expressions) {
+            parser.parseValue(expression);
+        }
+
+        return expressions.length * 1000000000L / (System.nanoTime() - start);
+    }
+
+    private static String[] createExpressions(Random random) {
+        String[] expressions = new String[EXPRESSIONS];
+
+        for (int i = 0; i < expressions.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            int operands = 1 + random.nextInt(20);
+
+            sb.append(random.nextInt(1000));
+
+            for (int j = 1; j < operands; j++) {
+                sb.append(OPERATORS[random.nextInt(OPERATORS.length)]);
+                sb.append(random.nextInt(1000));
+            }
+
+            expressions[i] = sb.toString();
+        }
+
+        return expressions;
+    }
+
+}
@@ -43,7 +43,7 @@ public class CalcMain {
             System.exit(1);
         } 
 
-        Node root = new CalcParser(new CalcLexer(args[0])).parse();
+        CalcNode root = new CalcParser(new CalcLexer(args[0])).parse();
         System.out.println(new Eval().eval(root));
     }
 
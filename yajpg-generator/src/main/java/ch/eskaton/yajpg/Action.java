@@ -34,12 +34,14 @@ import ch.eskaton.commons.utils.StringUtils;
  * An action consists of a type and an index. Depending on the action an index
  * has a different meaning. In case of an Error or Accept action it is
  * meaningless. If the action is Reduce the index references the rule which will
- * be reduced. For the remaining actions it defines the following state.
+ * be reduced. A ShiftReduce action shifts a token and reduces the rule
+ * referenced by the index without entering the following state. For the
+ * remaining actions it defines the following state.
  */
 public class Action {
 
     public static enum ActionType {
-        Error, Shift, Reduce, Goto, Accept
+        Error, Shift, Reduce, Goto, Accept, ShiftReduce
     };
 
     /**
@@ -73,7 +75,16 @@ public class Action {
         this.type = type;
     }
 
+    /**
+     * Encodes the action as an int. The lower three bits contain the type,
+     * the remaining bits the index. Errors are always encoded as 0.
+     * 
+     * @return The encoded action
+     */
     public int encode() {
+        if (getType() == ActionType.Error) {
+            return 0;
+        }
         return (getIndex() << 3) + getType().ordinal();
     }
 
@@ -51,6 +51,13 @@ import ch.eskaton.commons.utils.StringUtils;
  *      lexer-class:    &lt;Name of the lexer&gt;;
  *      parser-package: &lt;Package of the parser&gt;;
  *      token-enum:     &lt;Enum of tokens&gt;;
+ *      parser-mode:    table | direct;
+ *      listener:       true | false;
+ *      records:        &lt;non-terminal&gt;;
+ *      eliminate-unit-rules: true | false;
+ *      default-reductions: true | false;
+ *      precedence-climbing: true | false;
+ *      fused:          true | false;
  *      imports:        &lt;Import 1&gt;,
  *                      &lt;Import n&gt;;
  *    }
@@ -88,7 +95,47 @@ import ch.eskaton.commons.utils.StringUtils;
  * <li>
  * If no lexer class is specified, no lexer will be generated. In this case
  * token-enum is mandatory. It must define all tokens including an EOF token
- * to be used in a manually written lexer</li>
+ * to be used in a manually written lexer and an error token if the
+ * rules use error recovery</li>
+ * <li>
+ * parser-mode: A table-driven parser is generated by default. In the direct
+ * mode, the parse loop is coded as a switch over the states instead, which
+ * executes the actions of each state inline.</li>
+ * <li>
+ * listener: Generates a listener interface with one method per rule and a
+ * parse method which passes the reductions to a listener instead of
+ * executing the code of the rules. No syntax tree is built.</li>
+ * <li>
+ * records: Generates a method which returns an iterator over the records of
+ * a repetition non-terminal, e.g. <code>list: list item | item;</code>. The
+ * non-terminals on the right-hand side of its rules are the records. They
+ * are returned as soon as they are reduced and the rules of the repetition
+ * are reduced without executing their code. Rules which contain the
+ * repetition non-terminal therefore receive null for it while iterating over
+ * the records.</li>
+ * <li>
+ * eliminate-unit-rules: Rules with a single non-terminal on the right-hand
+ * side and without code other than <code>$$ = $1;</code> are bypassed in the
+ * parse tables instead of being reduced. They aren't reported to a reduction
+ * listener. Ignored in combination with listener.</li>
+ * <li>
+ * default-reductions: States which reduce the same rule for every token
+ * reduce it without reading the next token. A token which leads to such a
+ * state is shifted and reduced in one step without entering the state.
+ * Ignored in combination with listener.</li>
+ * <li>
+ * precedence-climbing: Non-terminals whose rules are binary operations
+ * <code>X: X op X</code> and operands which consist of terminals and X, e.g.
+ * <code>X: NUMBER | LP X RP</code>, are parsed by a subroutine which
+ * reduces the operations by the precedence of their operators instead of
+ * the parse tables. The subroutine is used if the parser reads the tokens
+ * itself and the expression can't be continued by other rules. Ignored in
+ * combination with listener and error recovery.</li>
+ * <li>
+ * fused: Inlines the lexer's automaton into the parser. The methods which
+ * take the input as a string scan it directly into columns of the action
+ * table. Tokens are only created if the code of a rule or token uses them.
+ * Requires lexer-class.</li>
  * <li>
  * token: A token may contain Java code in curly braces. It must contain an
  * assignment to $$ which resembles the LHS non-terminal.</li>
@@ -99,6 +146,22 @@ import ch.eskaton.commons.utils.StringUtils;
  * <p>
  * <code>term[TermNode]: term PLUS variable { $$ = new TermNode($1, PLUS, $2); };</code>
  * </li>
+ * <li>rules: The class of a non-terminal may also be one of the primitive
+ * types int, long or double. Its values are kept on a separate value stack
+ * and no node is created for them, e.g. to evaluate expressions while
+ * parsing. If the first accept symbol is of a primitive type, its value is
+ * returned by parseValue(). Example:
+ * <p>
+ * <code>term[double]: term PLUS term { $$ = $1 + $3; };</code>
+ * </li>
+ * <li>rules: The reserved terminal error matches erroneous input. If a
+ * syntax error occurs, the parser discards states until it can shift error
+ * and then skips tokens until it can continue. The errors are collected and
+ * the parse goes on. The value of error is the token at which the error was
+ * detected. Example:
+ * <p>
+ * <code>statement: error SEMICOLON { $$ = new ErrorNode($1); };</code>
+ * </li>
  * <li>Mask closing curly brackets in a code section with a backslash</li>
  * <li>The accept section specifies the non-terminals which accept a grammar</li>
  * </ul>
@@ -107,6 +170,8 @@ public class Config {
 
     static final String EOF = "EOF";
 
+    static final String ERROR = "error";
+
     /** Collection of defined tokens */
     private HashMap<String, Terminal> tokens;
 
@@ -143,6 +208,27 @@ public class Config {
     /** List of classes to be imported */
     private ArrayList<String> imports;
 
+    /** Kind of parser to generate */
+    private ParserMode parserMode = ParserMode.TABLE;
+
+    /** Generate a listener interface */
+    private boolean listener = false;
+
+    /** Repetition non-terminal whose records can be iterated */
+    private String records;
+
+    /** Bypass unit rules in the parse tables */
+    private boolean eliminateUnitRules = false;
+
+    /** Reduce without lookahead in states with a single reduction */
+    private boolean defaultReductions = false;
+
+    /** Parse operator expressions by precedence climbing */
+    private boolean precedenceClimbing = false;
+
+    /** Inline the lexer into the parser */
+    private boolean fused = false;
+
     private Config() {
     };
 
@@ -180,6 +266,8 @@ public class Config {
             throw new ConfigException("lexer-class and token-enum are missing");
         } else if (parserPackage == null) {
             throw new ConfigException("parser-package is missing");
+        } else if (fused && lexerClass == null) {
+            throw new ConfigException("fused: lexer-class is missing");
         }
 
         if (tokens.containsKey(EOF)) {
@@ -187,6 +275,16 @@ public class Config {
         }
 
         tokens.put(EOF, new Terminal(EOF, "", ""));
+
+        if (records != null) {
+            if (!nonTerminals.containsKey(records) || EOF.equals(records)) {
+                throw new ConfigException("records: undefined non-terminal '"
+                        + records + "'");
+            } else if (acceptStates.containsKey(records)) {
+                throw new ConfigException("records: '" + records
+                        + "' must not be an accept state");
+            }
+        }
     }
 
     /**
@@ -325,6 +423,26 @@ public class Config {
                     tokenEnum = parseString(tokenizer);
                 } else if ("imports".equals(setting)) {
                     imports = parseList(tokenizer);
+                } else if ("parser-mode".equals(setting)) {
+                    String mode = parseString(tokenizer);
+                    try {
+                        parserMode = ParserMode.valueOf(mode.toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new ConfigException("invalid parser-mode '"
+                                + mode + "'");
+                    }
+                } else if ("listener".equals(setting)) {
+                    listener = parseBoolean(tokenizer, setting);
+                } else if ("eliminate-unit-rules".equals(setting)) {
+                    eliminateUnitRules = parseBoolean(tokenizer, setting);
+                } else if ("default-reductions".equals(setting)) {
+                    defaultReductions = parseBoolean(tokenizer, setting);
+                } else if ("precedence-climbing".equals(setting)) {
+                    precedenceClimbing = parseBoolean(tokenizer, setting);
+                } else if ("fused".equals(setting)) {
+                    fused = parseBoolean(tokenizer, setting);
+                } else if ("records".equals(setting)) {
+                    records = parseString(tokenizer);
                 } else {
                     throw new ConfigException(
                             "Parse error: unexpected setting '"
@@ -515,6 +633,10 @@ public class Config {
                     setSyntax(tokenizer);
                 } else if (ttype == StreamTokenizer.TT_WORD) {
                     String symbol = tokenizer.sval;
+                    if (ERROR.equals(symbol) && !tokens.containsKey(ERROR)) {
+                        /* The error token is only defined if it's used */
+                        tokens.put(ERROR, new Terminal(ERROR, "", ""));
+                    }
                     if (!tokens.containsKey(symbol)) {
                         NonTerminal nt = nonTerminals.get(symbol);
                         if (nt == null) {
@@ -681,6 +803,9 @@ public class Config {
                     if (tokens.containsKey(terminalName)) {
                         throw new ConfigException("Duplicate token: "
                                 + terminalName);
+                    } else if (ERROR.equals(terminalName)) {
+                        throw new ConfigException("token name '" + ERROR
+                                + "' is reserved");
                     }
 
                     if (tokenizer.nextToken() != ':') {
@@ -811,6 +936,31 @@ public class Config {
         return s;
     }
 
+    /**
+     * Reads the value of a boolean setting.
+     * 
+     * @param tokenizer
+     *            Tokenizer
+     * @param setting
+     *            Name of the setting
+     * @return The value
+     * @throws IOException
+     *             Thrown if the grammar file can't be read
+     * @throws ConfigException
+     *             Thrown if the value is neither true nor false
+     */
+    private boolean parseBoolean(StreamTokenizer tokenizer, String setting)
+            throws IOException, ConfigException {
+        String value = parseString(tokenizer);
+
+        if (!"true".equals(value) && !"false".equals(value)) {
+            throw new ConfigException("invalid " + setting + " '" + value
+                    + "'");
+        }
+
+        return Boolean.parseBoolean(value);
+    }
+
     /**
      * Searches the rule which accepts the grammar.
      * 
@@ -881,6 +1031,16 @@ public class Config {
         return parserClass;
     }
 
+    /**
+     * Overrides the parser's class name.
+     * 
+     * @param parserClass
+     *            class name
+     */
+    public void setParserClass(String parserClass) {
+        this.parserClass = parserClass;
+    }
+
     /**
      * Returns the lexer's class name.
      * 
@@ -908,6 +1068,81 @@ public class Config {
         return tokenEnum;
     }
 
+    /**
+     * Returns the kind of parser to generate.
+     * 
+     * @return parser mode
+     */
+    public ParserMode getParserMode() {
+        return parserMode;
+    }
+
+    /**
+     * Overrides the kind of parser to generate.
+     * 
+     * @param parserMode
+     *            parser mode
+     */
+    public void setParserMode(ParserMode parserMode) {
+        this.parserMode = parserMode;
+    }
+
+    /**
+     * Returns whether a listener interface is generated.
+     * 
+     * @return true, if a listener interface is generated
+     */
+    public boolean isListener() {
+        return listener;
+    }
+
+    /**
+     * Returns the repetition non-terminal whose records can be iterated.
+     * 
+     * @return Name of the non-terminal or null
+     */
+    public String getRecords() {
+        return records;
+    }
+
+    /**
+     * Returns whether unit rules are bypassed in the parse tables.
+     * 
+     * @return true, if unit rules are eliminated
+     */
+    public boolean isEliminateUnitRules() {
+        return eliminateUnitRules;
+    }
+
+    /**
+     * Returns whether states with a single reduction reduce without
+     * lookahead.
+     * 
+     * @return true, if default reductions are enabled
+     */
+    public boolean isDefaultReductions() {
+        return defaultReductions;
+    }
+
+    /**
+     * Returns whether operator expressions are parsed by precedence
+     * climbing.
+     * 
+     * @return true, if precedence climbing is enabled
+     */
+    public boolean isPrecedenceClimbing() {
+        return precedenceClimbing;
+    }
+
+    /**
+     * Returns whether the lexer is inlined into the parser.
+     * 
+     * @return true, if the lexer is inlined
+     */
+    public boolean isFused() {
+        return fused;
+    }
+
     /**
      * Throws a generic exception after a parse error.
      * 
@@ -34,8 +34,12 @@ import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -65,6 +69,25 @@ public class Generator {
 
     private static final int LINE_LEN = 60;
 
+    /** Maximum count of chars in a string literal of a packed array */
+    private static final int LITERAL_LEN = 8192;
+
+    /** Maximum count of cases in a dispatch method of a direct-coded parser */
+    private static final int DISPATCH_LEN = 256;
+
+    /** Maximum count of states in a method of the direct-coded parse loop */
+    private static final int STATES_LEN = 32;
+
+    /** Maximum count of states which are coded directly in a profiled table-driven parser */
+    private static final int HOT_STATES = 64;
+
+    /** Percentage of the profiled state visits which are covered by the directly coded states */
+    private static final int HOT_SHARE = 90;
+
+    /** Primitive types of non-terminals which are kept on value stacks */
+    private static final List<String> PRIMITIVE_TYPES = Arrays.asList("int",
+            "long", "double");
+
     private String stateTableVar = "$STATE_TABLE$";
 
     private String tokenListVar = "$TOKEN_LIST$";
@@ -75,13 +98,7 @@ public class Generator {
 
     private String tokenHandlerVar = "$TOKEN_HANDLER$";
 
-    private String gotoTableVar = "$GOTO_TABLE$";
-
-    private String gotoTableIndexVar = "$GOTO_TABLE_INDEX$";
-
-    private String actionTableVar = "$ACTION_TABLE$";
-
-    private String actionTableIndexVar = "$ACTION_TABLE_INDEX$";
+    private String parseTablesVar = "$PARSE_TABLES$";
 
     private String terminalNamesVar = "$TERMINALS_NAMES$";
 
@@ -89,12 +106,64 @@ public class Generator {
 
     private String nonTerminalsVar = "$NON_TERMINALS$";
 
-    private String ruleTableVar = "$RULE_TABLE$";
+    private String ruleLhsVar = "$RULE_LHS$";
+
+    private String ruleLengthVar = "$RULE_LENGTH$";
+
+    private String reduceRuleVar = "$REDUCE_RULE$";
+
+    private String ruleMethodsVar = "$RULE_METHODS$";
+
+    private String listenerFieldsVar = "$LISTENER_FIELDS$";
+
+    private String listenerVar = "$LISTENER$";
+
+    private String recordsVar = "$RECORDS$";
+
+    private String startSymbolsVar = "$START_SYMBOLS$";
+
+    private String rootClassVar = "$ROOT_CLASS$";
+
+    private String valueStacksVar = "$VALUE_STACKS$";
+
+    private String valueMethodsVar = "$VALUE_METHODS$";
+
+    private String resetInputVar = "$RESET_INPUT$";
+
+    private String nextStepVar = "$NEXT_STEP$";
+
+    private String nextColumnVar = "$NEXT_COLUMN$";
+
+    private String errorTokenVar = "$ERROR_TOKEN$";
+
+    private String scannerFieldsVar = "$SCANNER_FIELDS$";
+
+    private String scannerVar = "$SCANNER$";
+
+    private String eofColumnVar = "$EOF_COLUMN$";
+
+    private String errorColumnVar = "$ERROR_COLUMN$";
+
+    private String defaultReductionsVar = "$DEFAULT_REDUCTIONS$";
+
+    private String expressionFieldsVar = "$EXPRESSION_FIELDS$";
+
+    private String expressionEntryVar = "$EXPRESSION_ENTRY$";
+
+    private String expressionsVar = "$EXPRESSIONS$";
+
+    private String profileFieldsVar = "$PROFILE_FIELDS$";
 
-    private String ruleSwitchVar = "$RULE_SWITCH$";
+    private String profileActionVar = "$PROFILE_ACTION$";
+
+    private String stepVar = "$STEP$";
+
+    private String profileVar = "$PROFILE$";
 
     private String tokenImportVar = "$TOKEN_IMPORT$";
 
+    private String tokenEnumVar = "$TOKEN_ENUM$";
+
     private String importsVar = "$IMPORTS$";
 
     private String classVar = "$CLASS$";
@@ -119,17 +188,20 @@ public class Generator {
     /** Mapping of character events to event numbers */
     private Map<RegexCharacterRange, Integer> eventMap;
 
-    /** Table to process terminals */
+    /** Table to process terminals, one row per state */
     private Action actionTable[][];
 
-    /** Indices to access actionTable */
-    private int actionTableIndex[];
-
-    /** Table to process non-terminals */
+    /** Table to process non-terminals, one row per state */
     private Action gotoTable[][];
 
-    /** Indices to access gotoTable */
-    private int gotoTableIndex[];
+    /** Compressed actionTable */
+    private PackedTable packedActionTable;
+
+    /** Compressed gotoTable, one row per non-terminal */
+    private PackedTable packedGotoTable;
+
+    /** Lookaheads of the reductions */
+    private LalrLookaheads lookaheads;
 
     /** States */
     private List<State> states = new ArrayList<State>();;
@@ -137,6 +209,30 @@ public class Generator {
     /** List of grammar rules */
     private List<Rule> grammar;
 
+    /** Grammar rules per non-terminal on the left-hand side */
+    private Map<String, List<Rule>> rulesByLhs;
+
+    /** Non-terminals which are parsed by precedence climbing */
+    private List<NonTerminal> expressions = new ArrayList<NonTerminal>();
+
+    /** Index + 1 of the entry which may start an expression in each state, 0 if none */
+    private int[] expressionStates;
+
+    /** Index of the expression of each entry */
+    private List<Integer> entryExpressions = new ArrayList<Integer>();
+
+    /** Columns of the action table which start the expression of each entry */
+    private List<boolean[]> entryColumns = new ArrayList<boolean[]>();
+
+    /** Generate code which records a profile? */
+    private boolean profiling = false;
+
+    /** Profile to optimise the generated code for, null if none */
+    private Profile profile;
+
+    /** States which are coded directly in a table-driven parser */
+    private boolean[] hotStates;
+
     /**
      * Constructor.
      * 
@@ -153,6 +249,58 @@ public class Generator {
         Rule.initialize();
     }
 
+    /**
+     * Overrides the name of the parser class defined in the grammar.
+     * 
+     * @param parserClass
+     *            Name of the parser class
+     */
+    public void setParserClass(String parserClass) {
+        config.setParserClass(parserClass);
+    }
+
+    /**
+     * Overrides the kind of parser defined in the grammar.
+     * 
+     * @param parserMode
+     *            Kind of parser
+     */
+    public void setParserMode(ParserMode parserMode) {
+        config.setParserMode(parserMode);
+    }
+
+    /**
+     * Generates a parser and lexer which count the lookups of actions and
+     * the matches of character ranges. The counts are written by their
+     * method writeProfile() and can be passed to {@link #setProfile(String)}.
+     * A profile passed to the generator is ignored.
+     * 
+     * @param profiling
+     *            Generate code which records a profile?
+     */
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+    }
+
+    /**
+     * Optimises the generated code for a profile. The states are renumbered
+     * so that states which follow each other frequently are next to each
+     * other in the tables, the most frequently visited states of a
+     * table-driven parser are coded directly and the lexer tests the
+     * character ranges by their frequency. The profile must have been
+     * recorded by a parser which has been generated from the same grammar.
+     * 
+     * @param profileFile
+     *            Name of the profile
+     * @throws IOException
+     * @throws ConfigException
+     *             if the profile is malformed
+     */
+    public void setProfile(String profileFile) throws IOException,
+            ConfigException {
+        profile = new Profile(profileFile);
+    }
+
     /**
      * Runs the generator.
      * 
@@ -179,12 +327,15 @@ public class Generator {
 
         parserFile.append("/").append(config.getParserClass()).append(".java");
 
+        if (generateLexer || config.isFused()) {
+            buildLexerTables();
+        }
+
         if (generateLexer) {
             StringBuilder lexerFile = new StringBuilder(200);
             lexerFile.append(sourcePath).append("/").append(
                     config.getParserPackage().replace('.', '/')).append("/")
                     .append(config.getLexerClass()).append(".java");
-            buildLexerTables();
             generateLexer(lexerFile.toString());
         }
         prepareParserStates();
@@ -253,6 +404,9 @@ public class Generator {
         index = sb.indexOf(tokenHandlerVar);
         sb.replace(index, index + tokenHandlerVar.length(), tokenHandler);
 
+        replaceVar(sb, profileVar, profiling ? getRangeProfileFields()
+                + getRangeProfile(true) : "");
+
         template = sb.toString();
         pw.print(template);
         pw.flush();
@@ -270,7 +424,7 @@ public class Generator {
         List<RegexStateMachine> rsmList = new ArrayList<RegexStateMachine>();
 
         for (String key : keys) {
-            if (key.equals(Config.EOF)) {
+            if (key.equals(Config.EOF) || key.equals(Config.ERROR)) {
                 continue;
             }
             Terminal terminal = terminals.get(key);
@@ -322,15 +476,16 @@ public class Generator {
     private void prepareParserStates() {
         Map<ItemSet, Action> actions = new HashMap<ItemSet, Action>();
 
-        /* Create the initial state */
-        State state = new State(maxState++);
-        states.add(state);
+        State state;
 
         /*
-         * Add the rules for all accepted grammars.
+         * Create an initial state for each accepted grammar, so a parse can
+         * start with any of them.
          */
         for (Rule r : getAcceptRules()) {
+            state = new State(maxState++);
             state.addItem(new Item(0, r));
+            states.add(state);
         }
 
         /*
@@ -392,17 +547,20 @@ public class Generator {
 
                 maxState++;
             } else {
-                /* If a set has no symbols it must be a single item */
-                Item item = itemSet.getSet().iterator().next();
-
-                if (item.getRule().isAccept()) {
-                    /* Accept */
-                    item.setAction(new Action(Action.ActionType.Accept, item
-                            .getRule().getRuleNumber()));
-                } else {
-                    /* Reduction */
-                    item.setAction(new Action(Action.ActionType.Reduce, item
-                            .getRule().getRuleNumber()));
+                /*
+                 * A set without symbols contains the completed items. Each of
+                 * them accepts or reduces its own rule.
+                 */
+                for (Item item : itemSet.getSet()) {
+                    if (item.getRule().isAccept()) {
+                        /* Accept */
+                        item.setAction(new Action(Action.ActionType.Accept,
+                                item.getRule().getRuleNumber()));
+                    } else {
+                        /* Reduction */
+                        item.setAction(new Action(Action.ActionType.Reduce,
+                                item.getRule().getRuleNumber()));
+                    }
                 }
             }
 
@@ -447,12 +605,10 @@ public class Generator {
         PrintWriter pw = new PrintWriter(fos);
         StringBuilder sb = new StringBuilder(10000);
         String lineSep = System.getProperty("line.separator");
-        String gotoTable = getGotoTable();
-        String gotoTableIndex = getGotoTableIndex();
-        String actionTable = getActionTable();
-        String actionTableIndex = getActionTableIndex();
-        String ruleTable = getRuleTable();
-        String ruleSwitch = getRuleSwitch();
+        String ruleLhs = getRuleLhs();
+        String ruleLength = getRuleLength();
+        String reduceRule = getReduceRule();
+        String ruleMethods = getRuleMethods();
         String terminals = getTerminals();
         String terminalNames = getTerminalNames();
         String nonTerminals = getNonTerminals();
@@ -496,21 +652,22 @@ public class Generator {
         index = sb.indexOf(tokenImportVar);
         sb.replace(index, index + tokenImportVar.length(), tokenEnum);
 
-        index = sb.indexOf(gotoTableVar);
-        sb.replace(index, index + gotoTableVar.length(), gotoTable);
+        index = sb.indexOf(tokenEnumVar);
+        sb.replace(index, index + tokenEnumVar.length(), getTerminalEnum());
 
-        index = sb.indexOf(gotoTableIndexVar);
-        sb.replace(index, index + gotoTableIndexVar.length(), gotoTableIndex);
-
-        index = sb.indexOf(actionTableVar);
-        sb.replace(index, index + actionTableVar.length(), actionTable);
+        if (config.getParserMode() == ParserMode.DIRECT) {
+            replaceVar(sb, parseTablesVar, getDirectCodedTables()
+                    + getDefaultReductionTable());
+        } else {
+            replaceVar(sb, parseTablesVar, getPackedTables()
+                    + getDefaultReductionTable());
+        }
 
-        index = sb.indexOf(actionTableIndexVar);
-        sb.replace(index, index + actionTableIndexVar.length(),
-                actionTableIndex);
+        index = sb.indexOf(ruleLhsVar);
+        sb.replace(index, index + ruleLhsVar.length(), ruleLhs);
 
-        index = sb.indexOf(ruleTableVar);
-        sb.replace(index, index + ruleTableVar.length(), ruleTable);
+        index = sb.indexOf(ruleLengthVar);
+        sb.replace(index, index + ruleLengthVar.length(), ruleLength);
 
         index = sb.indexOf(terminalsVar);
         sb.replace(index, index + terminalsVar.length(), terminals);
@@ -521,14 +678,91 @@ public class Generator {
         index = sb.indexOf(nonTerminalsVar);
         sb.replace(index, index + nonTerminalsVar.length(), nonTerminals);
 
-        index = sb.indexOf(ruleSwitchVar);
-        sb.replace(index, index + ruleSwitchVar.length(), ruleSwitch);
+        replaceVar(sb, reduceRuleVar, reduceRule);
+
+        while (sb.indexOf(rootClassVar) != -1) {
+            replaceVar(sb, rootClassVar, getRootClass());
+        }
+
+        replaceVar(sb, ruleMethodsVar, ruleMethods);
+
+        if (config.isListener()) {
+            replaceVar(sb, listenerFieldsVar, getListenerFields());
+            replaceVar(sb, listenerVar, getListener());
+        } else {
+            replaceVar(sb, listenerFieldsVar, "");
+            replaceVar(sb, listenerVar, "");
+        }
+
+        replaceVar(sb, startSymbolsVar, getStartSymbols());
+
+        replaceVar(sb, recordsVar, config.getRecords() != null ? getRecords()
+                : "");
+
+        replaceVar(sb, valueStacksVar, getValueStacks());
+        replaceVar(sb, valueMethodsVar, getValueMethods());
+
+        replaceVar(sb, resetInputVar, getResetInput());
+        replaceVar(sb, nextStepVar, getNextStep());
+
+        while (sb.indexOf(nextColumnVar) != -1) {
+            replaceVar(sb, nextColumnVar, getNextColumn());
+        }
+
+        if (config.isFused()) {
+            replaceVar(sb, errorTokenVar, "\n\t\tif (tok == null) {\n"
+                    + "\t\t\ttok = token(actionColumn);\n"
+                    + "\t\t}\n");
+            replaceVar(sb, scannerFieldsVar, getScannerFields());
+            replaceVar(sb, scannerVar, getScanner());
+        } else {
+            replaceVar(sb, errorTokenVar, "");
+            replaceVar(sb, scannerFieldsVar, "");
+            replaceVar(sb, scannerVar, "");
+        }
+
+        replaceVar(sb, defaultReductionsVar, getDefaultReductions());
+
+        replaceVar(sb, expressionFieldsVar, getExpressionFields());
+        replaceVar(sb, expressionsVar, getExpressions());
+
+        while (sb.indexOf(expressionEntryVar) != -1) {
+            replaceVar(sb, expressionEntryVar, getExpressionEntry());
+        }
+
+        replaceVar(sb, profileFieldsVar, getProfileFields());
+        replaceVar(sb, profileVar, getProfile());
+
+        replaceVar(sb, stepVar, getStep());
+        replaceVar(sb, profileActionVar, getProfileAction("\t\t\t\t"));
+
+        replaceVar(sb, eofColumnVar, String.valueOf(config.getTerminals()
+                .get(Config.EOF).getTerminalNumber()));
+
+        Terminal error = config.getTerminals().get(Config.ERROR);
+        replaceVar(sb, errorColumnVar, String.valueOf(error == null ? -1
+                : error.getTerminalNumber()));
 
         template = sb.toString();
         pw.print(template);
         pw.flush();
     }
 
+    /**
+     * Replaces the first occurrence of a template variable.
+     * 
+     * @param sb
+     *            The template
+     * @param var
+     *            Name of the variable
+     * @param value
+     *            Replacement
+     */
+    private void replaceVar(StringBuilder sb, String var, String value) {
+        int index = sb.indexOf(var);
+        sb.replace(index, index + var.length(), value);
+    }
+
     /**
      * Generates the Java code for the lexer's token handler.
      * 
@@ -567,203 +801,732 @@ public class Generator {
      */
     private String getInitialState() {
         StringBuilder sb = new StringBuilder(100);
-        sb.append("private int initialState = ").append(initialState).append(
-                ";");
+        sb.append("private static final int initialState = ").append(
+                initialState).append(";");
         return sb.toString();
     }
 
     /**
-     * Generates code for the rule table.
+     * Generates code for the compressed action and goto table and the
+     * methods to look up actions in them. The states which are visited most
+     * frequently according to the profile are coded directly instead.
      * 
      * @return Java code
      */
-    private String getRuleTable() {
-        Rule[] rules = new Rule[grammar.size()];
-        StringBuilder sb = new StringBuilder(500);
+    private String getPackedTables() {
+        StringBuilder sb = new StringBuilder(10000);
 
-        for (int i = 0; i < grammar.size(); i++) {
-            rules[grammar.get(i).getRuleNumber()] = grammar.get(i);
+        sb.append("/*\n");
+        sb.append("\t * The action and goto tables are compressed by row displacement. The\n");
+        sb.append("\t * entries of state s in the action table are found at actionBase[s] plus\n");
+        sb.append("\t * the column of a terminal in actionNext. actionCheck contains the column\n");
+        sb.append("\t * an entry belongs to. Cells which aren't stored contain the default\n");
+        sb.append("\t * action of the state. The goto table is stored the same way, but with\n");
+        sb.append("\t * one row per non-terminal.\n");
+        sb.append("\t */\n\n");
+
+        sb.append("\t/* Offset of each state's row in the action table */\n\t");
+        sb.append(getPackedArray("actionBase", packedActionTable.getBase()));
+        sb.append("\n\n\t/* Default action of each state */\n\t");
+        sb.append(getPackedArray("actionDefault", packedActionTable
+                .getDefaults()));
+        sb.append("\n\n\t/* Column of each entry in the action table */\n\t");
+        sb.append(getPackedArray("actionCheck", packedActionTable.getCheck()));
+        sb.append("\n\n\t/* Entries of the action table */\n\t");
+        sb.append(getPackedArray("actionNext", packedActionTable.getNext()));
+        sb.append("\n\n\t/* Offset of each non-terminal's row in the goto table */\n\t");
+        sb.append(getPackedArray("gotoBase", packedGotoTable.getBase()));
+        sb.append("\n\n\t/* Default goto-action of each non-terminal */\n\t");
+        sb.append(getPackedArray("gotoDefault", packedGotoTable.getDefaults()));
+        sb.append("\n\n\t/* State of each entry in the goto table */\n\t");
+        sb.append(getPackedArray("gotoCheck", packedGotoTable.getCheck()));
+        sb.append("\n\n\t/* Entries of the goto table */\n\t");
+        sb.append(getPackedArray("gotoNext", packedGotoTable.getNext()));
+        sb.append("\n\n");
+
+        sb.append("\t/* Returns the action of a state for a column in the action table */\n");
+        sb.append("\tprivate static int getAction(int state, int column) {\n");
+
+        if (hotStates != null && contains(hotStates)) {
+            sb.append("\t\t/* The most frequently visited states are coded directly */\n");
+            sb.append("\t\tswitch (state) {\n");
+
+            for (int r = 0; r < hotStates.length; r++) {
+                if (hotStates[r]) {
+                    sb.append("\t\t\tcase ").append(r).append(": return action")
+                            .append(r).append("(column);\n");
+                }
+            }
+
+            sb.append("\t\t}\n\n");
         }
 
-        sb.append("private final String[][] ruleTable = {\n");
+        sb.append("\t\tint index = actionBase[state] + column;\n\n");
+        sb.append("\t\treturn actionCheck[index] == column ? actionNext[index]"
+                + " : actionDefault[state];\n");
+        sb.append("\t}\n\n");
 
-        for (int i = 0; i < rules.length; i++) {
-            sb.append("\t\t{ ");
+        sb.append("\t/* Returns the goto-action of a non-terminal in a state */\n");
+        sb.append("\tprivate static int getGoto(int nonTerminal, int state) {\n");
+        sb.append("\t\tint index = gotoBase[nonTerminal] + state;\n\n");
+        sb.append("\t\treturn gotoCheck[index] == state ? gotoNext[index]"
+                + " : gotoDefault[nonTerminal];\n");
+        sb.append("\t}\n\n");
 
-            sb.append("\"" + rules[i].getLhs() + "\", ");
+        for (int r = 0; r < actionTable.length; r++) {
+            if (isHotState(r)) {
+                int[] actions = new int[actionTable[r].length];
 
-            for (int j = 0; j <= rules[i].getLastRhsPosition(); j++) {
-                sb.append("\"" + rules[i].getRhs(j) + "\"");
-                if (j < rules[i].getLastRhsPosition()) {
-                    sb.append(", ");
+                for (int c = 0; c < actions.length; c++) {
+                    actions[c] = actionTable[r][c].encode();
                 }
-            }
 
-            if (i < rules.length - 1) {
-                sb.append(" }, \n");
-            } else {
-                sb.append(" }\n");
+                sb.append("\t/* State ").append(r).append(" */\n");
+                appendSwitch(sb, "action" + r, "column", actions,
+                        getDefaultAction(actionTable[r],
+                                Action.ActionType.Reduce));
             }
         }
 
-        sb.append("\t};\n");
-
-        return sb.toString();
+        return sb.toString().trim();
     }
 
     /**
-     * Generates code for the terminal table.
+     * Generates code for a direct-coded automaton. The parse loop is coded
+     * by {@link #appendStates(StringBuilder)}. Besides, each state gets a
+     * method which returns the action for a column of the action table, and
+     * each non-terminal a method which returns the goto-action for a state,
+     * which are used by reductions, error recovery and precedence climbing.
+     * Both consist of a switch with the default action in the default
+     * branch.
      * 
      * @return Java code
      */
-    private String getTerminals() {
-        HashMap<String, Terminal> terminals = config.getTerminals();
-        StringBuilder sb = new StringBuilder(500);
-        String[] s = new String[terminals.size()];
-        int len = LINE_LEN;
+    private String getDirectCodedTables() {
+        StringBuilder sb = new StringBuilder(10000);
+        int rows = actionTable.length;
+        int gotoCols = config.getNonTerminals().size();
+        String[] nonTerminalNames = new String[gotoCols];
 
-        for (Entry<String, Terminal> e : terminals.entrySet()) {
-            Terminal t = e.getValue();
-            s[t.getTerminalNumber()] = t.getName();
+        for (NonTerminal nt : config.getNonTerminals().values()) {
+            nonTerminalNames[nt.getNonTerminalNumber()] = nt.getName();
         }
 
-        sb.append("private final " + getTerminalEnum() + "[] actions = {\n");
+        sb.append("/*\n");
+        sb.append("\t * The parse loop and the action and goto tables are coded directly.\n");
+        sb.append("\t * The actions of each state are executed by a case of the parse loop.\n");
+        sb.append("\t * Furthermore, there is one method per state which returns the action\n");
+        sb.append("\t * for a column of the action table and one method per non-terminal\n");
+        sb.append("\t * which returns the goto-action for a state.\n");
+        sb.append("\t */\n\n");
 
-        for (int i = 0; i < s.length; i++) {
+        appendStates(sb);
 
-            if (i > 0) {
-                sb.append(", ");
-            } else {
-                sb.append("\t\t");
+        sb.append("\t/* Returns the action of a state for a column in the action table */\n");
+        appendDispatch(sb, "getAction", "action", "state", "column", rows);
+
+        sb.append("\t/* Returns the goto-action of a non-terminal in a state */\n");
+        appendDispatch(sb, "getGoto", "gotoAction", "nonTerminal", "state",
+                gotoCols);
+
+        for (int r = 0; r < rows; r++) {
+            int[] actions = new int[actionTable[r].length];
+
+            for (int c = 0; c < actions.length; c++) {
+                actions[c] = actionTable[r][c].encode();
             }
 
-            if (len < 0) {
-                len = LINE_LEN;
-                sb.append("\n\t\t");
+            sb.append("\t/* State ").append(r).append(" */\n");
+            appendSwitch(sb, "action" + r, "column", actions,
+                    getDefaultAction(actionTable[r], Action.ActionType.Reduce));
+        }
+
+        for (int c = 0; c < gotoCols; c++) {
+            Action[] column = new Action[rows];
+            int[] gotos = new int[rows];
+
+            for (int r = 0; r < rows; r++) {
+                column[r] = gotoTable[r][c];
             }
 
-            String terminal = getTerminalEnum() + "." + s[i];
-            sb.append(terminal);
+            int defaultGoto = getDefaultAction(column, Action.ActionType.Goto);
 
-            len -= terminal.length() + 2;
-        }
+            /* Missing gotos are never looked up, see packParseTables() */
+            for (int r = 0; r < rows; r++) {
+                gotos[r] = column[r].getType() == Action.ActionType.Error
+                        ? defaultGoto : column[r].encode();
+            }
 
-        sb.append("\n\t};");
+            sb.append("\t/* Non-terminal ").append(nonTerminalNames[c])
+                    .append(" */\n");
+            appendSwitch(sb, "gotoAction" + c, "state", gotos, defaultGoto);
+        }
 
-        return sb.toString();
+        return sb.toString().trim();
     }
 
     /**
-     * Returns the name of the enum that defines terminals.
+     * Appends the parse loop of a direct-coded parser. The states are coded
+     * as cases of a switch on the state on top of the stack, in methods of
+     * at most {@link #STATES_LEN} states. Each case switches on the column
+     * of the token and executes the action inline. A shift leaves the loop
+     * and enters the case of its target state with the next token, a
+     * reduction continues the loop with the state of its goto-action.
      * 
-     * @return Name of the terminal enum
+     * @param sb
+     *            Generated code
      */
-    private String getTerminalEnum() {
-        if (config.getLexerClass() == null) {
-            return config.getTokenEnum().substring(
-                    config.getTokenEnum().lastIndexOf(".") + 1);
+    private void appendStates(StringBuilder sb) {
+        int rows = actionTable.length;
+        int chunks = (rows + STATES_LEN - 1) / STATES_LEN;
+
+        for (int i = 0; i < chunks; i++) {
+            sb.append("\t/* Executes the action of states ").append(
+                    i * STATES_LEN).append(" to ").append(
+                    Math.min(rows, (i + 1) * STATES_LEN) - 1).append(
+                    ", returns null to continue with the same token */\n");
+            sb.append("\tprivate PushStatus states").append(i).append(
+                    "(int actionColumn, Token tok) throws ParseException {\n");
+            sb.append("\t\tswitch (stateStack[top]) {\n");
+
+            for (int r = i * STATES_LEN; r < Math.min(rows, (i + 1)
+                    * STATES_LEN); r++) {
+                appendState(sb, r);
+            }
+
+            sb.append("\t\t}\n\n");
+            sb.append("\t\tthrow new ParseException(\"Invalid state in parser.\", getPosition(tok));\n");
+            sb.append("\t}\n\n");
         }
-        return "Terminals";
     }
 
     /**
-     * Generates code for an array containing non-terminal names.
+     * Appends the case of a state to the direct-coded parse loop. Columns
+     * with the same action share a case label, the default action is
+     * executed for the remaining columns.
      * 
-     * @return Java code
+     * @param sb
+     *            Generated code
+     * @param state
+     *            The state
      */
-    private String getTerminalNames() {
-        HashMap<String, Terminal> terminals = config.getTerminals();
-        StringBuilder sb = new StringBuilder(500);
-        String[] s = new String[terminals.size()];
-        int len = LINE_LEN;
+    private void appendState(StringBuilder sb, int state) {
+        Map<Integer, List<Integer>> cases = new LinkedHashMap<Integer, List<Integer>>();
+        Map<Integer, Action> actions = new HashMap<Integer, Action>();
+        int defaultAction = getDefaultAction(actionTable[state],
+                Action.ActionType.Reduce);
 
-        for (Entry<String, Terminal> e : terminals.entrySet()) {
-            Terminal t = e.getValue();
-            s[t.getTerminalNumber()] = t.getName();
-        }
+        for (int c = 0; c < actionTable[state].length; c++) {
+            Action action = actionTable[state][c];
+            int encoded = action.encode();
 
-        sb.append("private final String[] actionNames = {\n");
+            actions.put(encoded, action);
 
-        for (int i = 0; i < s.length; i++) {
-            if (i > 0) {
-                sb.append(", ");
-            } else {
-                sb.append("\t\t");
-            }
+            if (encoded != defaultAction) {
+                List<Integer> columns = cases.get(encoded);
 
-            if (len < 0) {
-                sb.append("\n\t\t");
-                len = LINE_LEN;
+                if (columns == null) {
+                    columns = new ArrayList<Integer>();
+                    cases.put(encoded, columns);
+                }
+
+                columns.add(c);
             }
+        }
 
-            sb.append("\"" + s[i] + "\"");
+        sb.append("\t\t\tcase ").append(state).append(":\n");
 
-            len -= s[i].length() + 2;
+        if (!cases.isEmpty()) {
+            sb.append("\t\t\t\tswitch (actionColumn) {\n");
+
+            for (Entry<Integer, List<Integer>> e : cases.entrySet()) {
+                sb.append("\t\t\t\t\t");
+
+                for (int column : e.getValue()) {
+                    sb.append("case ").append(column).append(": ");
+                }
+
+                sb.append(getStateAction(actions.get(e.getKey()), state))
+                        .append("\n");
+            }
+
+            sb.append("\t\t\t\t}\n\n");
         }
 
-        sb.append("\n\t};");
+        Action action = actions.get(defaultAction);
 
-        return sb.toString();
+        sb.append("\t\t\t\t").append(
+                action == null ? "return error(" + state
+                        + ", actionColumn, tok);" : getStateAction(action,
+                        state)).append("\n\n");
     }
 
     /**
-     * Generates code for the terminal enum. 
+     * Generates the statements which execute an action in the
+     * direct-coded parse loop.
      * 
+     * @param action
+     *            The action
+     * @param state
+     *            The state of the action
      * @return Java code
      */
-    private String getTerminalsEnum() {
-        HashMap<String, Terminal> terminals = config.getTerminals();
-        StringBuilder sb = new StringBuilder(500);
-        String[] s = new String[terminals.size()];
-        int len = LINE_LEN;
+    private String getStateAction(Action action, int state) {
+        switch (action.getType()) {
+            case Shift:
+                return "return shift(" + action.getIndex()
+                        + ", actionColumn, tok);";
 
-        for (Entry<String, Terminal> e : terminals.entrySet()) {
-            Terminal nt = e.getValue();
-            s[nt.getTerminalNumber()] = nt.getName();
+            case ShiftReduce:
+                return "return shiftReduce(" + action.getIndex()
+                        + ", actionColumn, tok);";
+
+            case Reduce:
+                return "reduction(" + action.getIndex() + ", " + state
+                        + ", tok); return null;";
+
+            case Accept:
+                return "return PushStatus.ACCEPTED;";
+
+            default:
+                return "return error(" + state + ", actionColumn, tok);";
         }
+    }
 
-        sb.append("public enum Terminals {\n");
+    /**
+     * Appends a method which dispatches to one of the numbered methods
+     * {@code target}0 to {@code target}{@code count - 1}. If there are more
+     * than {@link #DISPATCH_LEN} targets, the dispatch is split into several
+     * methods to keep them small enough to be compiled by the JIT.
+     * 
+     * @param sb
+     *            Generated code
+     * @param name
+     *            Name of the dispatch method
+     * @param target
+     *            Name of the target methods without their number
+     * @param selector
+     *            Parameter which selects the target method
+     * @param param
+     *            Parameter which is passed to the target method
+     * @param count
+     *            Count of target methods
+     */
+    private void appendDispatch(StringBuilder sb, String name, String target,
+            String selector, String param, int count) {
+        int chunks = (count + DISPATCH_LEN - 1) / DISPATCH_LEN;
 
-        for (int i = 0; i < s.length; i++) {
-            if (i > 0) {
-                sb.append(", ");
-            } else {
-                sb.append("\t\t");
-            }
+        sb.append("\tprivate static int ").append(name).append("(int ")
+                .append(selector).append(", int ").append(param).append(") {\n");
 
-            if (len < 0) {
-                len = LINE_LEN;
-                sb.append("\n\t\t");
+        if (chunks > 1) {
+            sb.append("\t\tswitch (").append(selector).append(" / ").append(
+                    DISPATCH_LEN).append(") {\n");
+
+            for (int i = 0; i < chunks; i++) {
+                sb.append("\t\t\tcase ").append(i).append(": return ").append(
+                        name).append(i).append("(").append(selector).append(
+                        ", ").append(param).append(");\n");
             }
 
-            sb.append(s[i]);
-            len -= s[i].length() + 2;
+            sb.append("\t\t}\n\n\t\treturn E;\n\t}\n\n");
+
+            for (int i = 0; i < chunks; i++) {
+                sb.append("\tprivate static int ").append(name).append(i)
+                        .append("(int ").append(selector).append(", int ")
+                        .append(param).append(") {\n");
+                appendDispatchSwitch(sb, target, selector, param, i
+                        * DISPATCH_LEN, Math.min(count, (i + 1) * DISPATCH_LEN));
+            }
+        } else {
+            appendDispatchSwitch(sb, target, selector, param, 0, count);
         }
+    }
 
-        sb.append("\n\t};\n");
+    /**
+     * Appends the switch of a dispatch method and closes the method.
+     * 
+     * @param sb
+     *            Generated code
+     * @param target
+     *            Name of the target methods without their number
+     * @param selector
+     *            Parameter which selects the target method
+     * @param param
+     *            Parameter which is passed to the target method
+     * @param from
+     *            First target method
+     * @param to
+     *            Last target method (exclusive)
+     */
+    private void appendDispatchSwitch(StringBuilder sb, String target,
+            String selector, String param, int from, int to) {
+        sb.append("\t\tswitch (").append(selector).append(") {\n");
 
-        return sb.toString();
+        for (int i = from; i < to; i++) {
+            sb.append("\t\t\tcase ").append(i).append(": return ").append(
+                    target).append(i).append("(").append(param).append(");\n");
+        }
+
+        sb.append("\t\t}\n\n\t\treturn E;\n\t}\n\n");
     }
 
     /**
-     * Generates code for the non-terminal array.
+     * Appends a method which returns the encoded action for an index in a
+     * row or column of the parse tables. Indices with the same action share a
+     * case label, the default action is returned in the default branch.
      * 
-     * @return Java code
+     * @param sb
+     *            Generated code
+     * @param name
+     *            Name of the method
+     * @param param
+     *            Name of the parameter
+     * @param actions
+     *            Encoded actions of a row or column of a table
+     * @param defaultAction
+     *            The encoded default action
      */
-    private String getNonTerminals() {
-        HashMap<String, NonTerminal> nonTerminals = config.getNonTerminals();
-        StringBuilder sb = new StringBuilder(500);
-        String[] s = new String[nonTerminals.size()];
-        int len = LINE_LEN;
+    private void appendSwitch(StringBuilder sb, String name, String param,
+            int[] actions, int defaultAction) {
+        Map<Integer, List<Integer>> cases = new LinkedHashMap<Integer, List<Integer>>();
 
-        for (Entry<String, NonTerminal> e : nonTerminals.entrySet()) {
-            NonTerminal nt = e.getValue();
-            s[nt.getNonTerminalNumber()] = nt.getName();
+        for (int i = 0; i < actions.length; i++) {
+            if (actions[i] != defaultAction) {
+                List<Integer> indices = cases.get(actions[i]);
+
+                if (indices == null) {
+                    indices = new ArrayList<Integer>();
+                    cases.put(actions[i], indices);
+                }
+
+                indices.add(i);
+            }
         }
 
-        sb.append("private final String[] nonTerminals = {\n");
+        sb.append("\tprivate static int ").append(name).append("(int ")
+                .append(param).append(") {\n");
 
-        for (int i = 0; i < s.length; i++) {
+        if (!cases.isEmpty()) {
+            sb.append("\t\tswitch (").append(param).append(") {\n");
+
+            for (Entry<Integer, List<Integer>> e : cases.entrySet()) {
+                sb.append("\t\t\t");
+
+                for (int index : e.getValue()) {
+                    sb.append("case ").append(index).append(": ");
+                }
+
+                sb.append("return ").append(e.getKey()).append(";\n");
+            }
+
+            sb.append("\t\t}\n\n");
+        }
+
+        sb.append("\t\treturn ").append(defaultAction).append(";\n\t}\n\n");
+    }
+
+    /**
+     * Generates code for an array containing the reduction of each state
+     * which reduces the same rule for every token, or 0.
+     * 
+     * @return Java code, empty if default reductions are disabled
+     */
+    private String getDefaultReductionTable() {
+        if (!isDefaultReductions()) {
+            return "";
+        }
+
+        int[] reductions = new int[actionTable.length];
+
+        for (int r = 0; r < actionTable.length; r++) {
+            Action reduction = getDefaultReduction(actionTable[r]);
+
+            reductions[r] = reduction == null ? 0 : reduction.encode();
+        }
+
+        return "\n\n\t/* Reduction of each state which doesn't need a lookahead, 0 if none */\n\t"
+                + getPackedArray("defaultReductions", reductions);
+    }
+
+    /**
+     * Generates the code which reduces the rules of the states on top of the
+     * stack which don't need a lookahead after a shift-reduction. Thereby,
+     * the next token is only read when it is needed.
+     * 
+     * @return Java code, empty if default reductions are disabled
+     */
+    private String getDefaultReductions() {
+        if (!isDefaultReductions()) {
+            return "";
+        }
+
+        return "\n\n\t\twhile ((action = defaultReductions[stateStack[top]]) != 0) {\n"
+                + "\t\t\treduction(action>>3, stateStack[top], tok);\n"
+                + "\t\t}";
+    }
+
+    /**
+     * Generates code for an array containing the goto column of the
+     * non-terminal on the left-hand side of each rule.
+     * 
+     * @return Java code
+     */
+    private String getRuleLhs() {
+        int[] lhs = new int[grammar.size()];
+
+        for (Rule rule : grammar) {
+            lhs[rule.getRuleNumber()] = ((NonTerminal) rule.getLhs())
+                    .getNonTerminalNumber();
+        }
+
+        return getPackedArray("ruleLhs", lhs);
+    }
+
+    /**
+     * Generates code for an array containing the count of right-hand side
+     * symbols of each rule.
+     * 
+     * @return Java code
+     */
+    private String getRuleLength() {
+        int[] length = new int[grammar.size()];
+
+        for (Rule rule : grammar) {
+            length[rule.getRuleNumber()] = rule.getRhsCount();
+        }
+
+        return getPackedArray("ruleLength", length);
+    }
+
+    /**
+     * Generates code for an array which is packed into string literals and
+     * unpacked during class initialisation. Thereby, the tables don't
+     * contribute to the size of the static initialiser. If all values fit
+     * into a char, a char array is generated, otherwise an int array.
+     * 
+     * @param name
+     *            Name of the array
+     * @param values
+     *            Values of the array, -1 is the only negative value allowed
+     * @return Java code
+     */
+    private String getPackedArray(String name, int[] values) {
+        StringBuilder sb = new StringBuilder(500);
+        boolean chars = true;
+        int len = 0;
+
+        for (int value : values) {
+            if (value < -1 || value >= 0xFFFF) {
+                chars = false;
+            }
+        }
+
+        sb.append("private static final ").append(chars ? "char" : "int")
+                .append("[] ").append(name).append(" = ").append(
+                        chars ? "unpackChars" : "unpackInts").append(
+                        "(new String[] {\n\t\t\"");
+
+        for (int i = 0; i < values.length; i++) {
+            if (chars) {
+                appendChar(sb, values[i] & 0xFFFF);
+                len++;
+            } else {
+                appendChar(sb, values[i] >>> 16);
+                appendChar(sb, values[i] & 0xFFFF);
+                len += 2;
+            }
+
+            if (i == values.length - 1) {
+                break;
+            } else if (len >= LITERAL_LEN) {
+                /* The length of a string constant is limited */
+                sb.append("\",\n\t\t\"");
+                len = 0;
+            } else if (i % 16 == 15) {
+                sb.append("\" +\n\t\t\"");
+            }
+        }
+
+        sb.append("\"\n\t});");
+
+        return sb.toString();
+    }
+
+    /**
+     * Appends a char to a string literal. Non-printable characters are
+     * escaped.
+     * 
+     * @param sb
+     *            A string literal
+     * @param c
+     *            A char
+     */
+    private void appendChar(StringBuilder sb, int c) {
+        if (c >= 0x20 && c < 0x7F && c != '"' && c != '\\') {
+            sb.append((char) c);
+        } else if (c < 0x100) {
+            sb.append('\\').append((char) ('0' + (c >> 6)))
+                    .append((char) ('0' + ((c >> 3) & 0x7)))
+                    .append((char) ('0' + (c & 0x7)));
+        } else {
+            sb.append(String.format("\\u%04x", c));
+        }
+    }
+
+    /**
+     * Generates code for the terminal table.
+     * 
+     * @return Java code
+     */
+    private String getTerminals() {
+        HashMap<String, Terminal> terminals = config.getTerminals();
+        StringBuilder sb = new StringBuilder(500);
+        String[] s = new String[terminals.size()];
+        int len = LINE_LEN;
+
+        for (Entry<String, Terminal> e : terminals.entrySet()) {
+            Terminal t = e.getValue();
+            s[t.getTerminalNumber()] = t.getName();
+        }
+
+        sb.append("private static final " + getTerminalEnum() + "[] actions = {\n");
+
+        for (int i = 0; i < s.length; i++) {
+
+            if (i > 0) {
+                sb.append(", ");
+            } else {
+                sb.append("\t\t");
+            }
+
+            if (len < 0) {
+                len = LINE_LEN;
+                sb.append("\n\t\t");
+            }
+
+            String terminal = getTerminalEnum() + "." + s[i];
+            sb.append(terminal);
+
+            len -= terminal.length() + 2;
+        }
+
+        sb.append("\n\t};");
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the name of the enum that defines terminals.
+     * 
+     * @return Name of the terminal enum
+     */
+    private String getTerminalEnum() {
+        if (config.getLexerClass() == null) {
+            return config.getTokenEnum().substring(
+                    config.getTokenEnum().lastIndexOf(".") + 1);
+        }
+        return "Terminals";
+    }
+
+    /**
+     * Generates code for an array containing non-terminal names.
+     * 
+     * @return Java code
+     */
+    private String getTerminalNames() {
+        HashMap<String, Terminal> terminals = config.getTerminals();
+        StringBuilder sb = new StringBuilder(500);
+        String[] s = new String[terminals.size()];
+        int len = LINE_LEN;
+
+        for (Entry<String, Terminal> e : terminals.entrySet()) {
+            Terminal t = e.getValue();
+            s[t.getTerminalNumber()] = t.getName();
+        }
+
+        sb.append("private static final String[] actionNames = {\n");
+
+        for (int i = 0; i < s.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            } else {
+                sb.append("\t\t");
+            }
+
+            if (len < 0) {
+                sb.append("\n\t\t");
+                len = LINE_LEN;
+            }
+
+            sb.append("\"" + s[i] + "\"");
+
+            len -= s[i].length() + 2;
+        }
+
+        sb.append("\n\t};");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates code for the terminal enum. 
+     * 
+     * @return Java code
+     */
+    private String getTerminalsEnum() {
+        HashMap<String, Terminal> terminals = config.getTerminals();
+        StringBuilder sb = new StringBuilder(500);
+        String[] s = new String[terminals.size()];
+        int len = LINE_LEN;
+
+        for (Entry<String, Terminal> e : terminals.entrySet()) {
+            Terminal nt = e.getValue();
+            s[nt.getTerminalNumber()] = nt.getName();
+        }
+
+        sb.append("public enum Terminals {\n");
+
+        for (int i = 0; i < s.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            } else {
+                sb.append("\t\t");
+            }
+
+            if (len < 0) {
+                len = LINE_LEN;
+                sb.append("\n\t\t");
+            }
+
+            sb.append(s[i]);
+            len -= s[i].length() + 2;
+        }
+
+        sb.append("\n\t};\n");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates code for the non-terminal array.
+     * 
+     * @return Java code
+     */
+    private String getNonTerminals() {
+        HashMap<String, NonTerminal> nonTerminals = config.getNonTerminals();
+        StringBuilder sb = new StringBuilder(500);
+        String[] s = new String[nonTerminals.size()];
+        int len = LINE_LEN;
+
+        for (Entry<String, NonTerminal> e : nonTerminals.entrySet()) {
+            NonTerminal nt = e.getValue();
+            s[nt.getNonTerminalNumber()] = nt.getName();
+        }
+
+        sb.append("private static final String[] nonTerminals = {\n");
+
+        for (int i = 0; i < s.length; i++) {
             if (i > 0) {
                 sb.append(", ");
             } else {
@@ -793,7 +1556,7 @@ public class Generator {
         StringBuilder sb = new StringBuilder(10000);
         int rows = lexerStates.length;
 
-        sb.append("private final int[][] stateTable = {\n");
+        sb.append("private static final int[][] stateTable = {\n");
 
         for (int r = 0; r < rows; r++) {
             sb.append(" \t\t{ ");
@@ -810,346 +1573,2658 @@ public class Generator {
             }
         }
 
-        sb.append("\t};");
-
-        return sb.toString();
+        sb.append("\t};");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates code for a list to map states to tokens.
+     * 
+     * @return Java code
+     */
+    private String getTokenList() {
+        StringBuilder sb = new StringBuilder(10000);
+        String enumName = getTerminalEnum();
+        int len = LINE_LEN;
+
+        sb.append("public static final " + enumName + "[] tokenList = {\n\t\t");
+
+        for (int i = 0; i < tokenList.length; i++) {
+            if (len < 0) {
+                len = LINE_LEN;
+                sb.append("\n\t\t");
+            }
+
+            String tokenName = tokenList[i] == null ? "null" : enumName + "."
+                    + tokenList[i];
+            sb.append(tokenName);
+
+            len -= tokenName.length() + 2;
+
+            if (i < tokenList.length - 1) {
+                sb.append(", ");
+            }
+        }
+
+        sb.append("\n\t};");
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the character ranges of the lexer's events ordered by their
+     * first character.
+     * 
+     * @return The character ranges
+     */
+    private List<RegexCharacterRange> getCharacterRanges() {
+        List<RegexCharacterRange> ranges = new ArrayList<RegexCharacterRange>(
+                eventMap.keySet());
+
+        Collections.sort(ranges, new Comparator<RegexCharacterRange>() {
+            public int compare(RegexCharacterRange r1, RegexCharacterRange r2) {
+                return r1.getFrom().charAt(0) - r2.getFrom().charAt(0);
+            }
+        });
+
+        return ranges;
+    }
+
+    /**
+     * Generates code to map from character events to event numbers. The
+     * character ranges are tested by their frequency in the profile. In the
+     * profiling mode, the matches of each range are counted.
+     * 
+     * @return Java code
+     */
+    private String getEventMapping() {
+        StringBuilder sb = new StringBuilder(1000);
+        List<RegexCharacterRange> ranges = getCharacterRanges();
+        boolean firstIf = true;
+
+        if (isProfiled()) {
+            Collections.sort(ranges, new Comparator<RegexCharacterRange>() {
+                public int compare(RegexCharacterRange r1,
+                        RegexCharacterRange r2) {
+                    return Long.valueOf(getRangeCount(r2)).compareTo(
+                            getRangeCount(r1));
+                }
+
+                private long getRangeCount(RegexCharacterRange range) {
+                    return profile.getRangeCount(range.getFrom().charAt(0),
+                            range.getTo().charAt(0));
+                }
+            });
+        }
+
+        for (int i = 0; i < ranges.size(); i++) {
+            RegexCharacterRange key = ranges.get(i);
+            int eventNumber = eventMap.get(key);
+            if (firstIf) {
+                firstIf = false;
+            } else {
+                sb.append(" else ");
+            }
+            if (key.getFrom().equals(key.getTo())) {
+                sb.append("if(c == ").append((int) key.getFrom().charAt(0))
+                        .append(") {\n");
+            } else {
+                sb.append("if(c >= ").append((int) key.getFrom().charAt(0))
+                        .append(" && c <= ")
+                        .append((int) key.getTo().charAt(0)).append(") {\n");
+            }
+            if (profiling) {
+                sb.append("\t\t\treturn profileRange(").append(i).append(", ")
+                        .append(eventNumber).append(");\n");
+            } else {
+                sb.append("\t\t\treturn ").append(eventNumber).append(";\n");
+            }
+            sb.append("\t\t}");
+        }
+
+        sb.append(" else {\n");
+        sb.append("\t\t\treturn " + eventMap.size() + ";\n");
+        sb.append("\t\t}\n");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the code which resets the input of the parser. The inlined
+     * lexer replaces the lexer in the fused mode.
+     * 
+     * @return Java code
+     */
+    private String getResetInput() {
+        if (config.isFused()) {
+            return "lexer = null;\n"
+                    + "\t\tthis.input = input;\n"
+                    + "\t\ttokenEnd = 0;";
+        }
+
+        return "if (!(lexer instanceof ResettableLexer)) {\n"
+                + "\t\t\tthrow new UnsupportedOperationException(\"Lexer \"\n"
+                + "\t\t\t\t\t+ lexer.getClass().getName() + \" can't be reset\");\n"
+                + "\t\t}\n\n"
+                + "\t\t((ResettableLexer) lexer).reset(input);";
+    }
+
+    /**
+     * Generates the body of the method which processes a token. A
+     * table-driven parser looks up the actions in the action table, a
+     * direct-coded parser executes the actions of the state on top of the
+     * stack, see {@link #appendStates(StringBuilder)}. Both repeat until the
+     * token is shifted or the parse ends.
+     * 
+     * @return Java code
+     */
+    private String getStep() {
+        StringBuilder sb = new StringBuilder(1000);
+
+        if (config.getParserMode() == ParserMode.DIRECT) {
+            int chunks = (actionTable.length + STATES_LEN - 1) / STATES_LEN;
+
+            sb.append("PushStatus status;\n\n");
+            sb.append("\t\tdo {").append(getProfileAction("\t\t\t"));
+
+            if (chunks > 1) {
+                sb.append("\n\t\t\tswitch (stateStack[top] / ").append(
+                        STATES_LEN).append(") {\n");
+
+                for (int i = 0; i < chunks; i++) {
+                    sb.append("\t\t\t\tcase ").append(i).append(
+                            ": status = states").append(i).append(
+                            "(actionColumn, tok); break;\n");
+                }
+
+                sb.append("\t\t\t\tdefault: throw new ParseException(\"Invalid state in parser.\", getPosition(tok));\n");
+                sb.append("\t\t\t}\n\n");
+            } else {
+                sb.append("\n\t\t\tstatus = states0(actionColumn, tok);\n\n");
+            }
+
+            sb.append("\t\t\tif (status == null && debugging) {\n");
+            sb.append("\t\t\t\tprintStateStack();\n");
+            sb.append("\t\t\t}\n");
+            sb.append("\t\t} while (status == null);\n\n");
+            sb.append("\t\treturn status;");
+
+            return sb.toString();
+        }
+
+        sb.append("PushStatus status;\n");
+        sb.append("\t\tint action;\n\n");
+        sb.append("\t\twhile (true) {\n");
+        sb.append("\t\t\taction = getAction(stateStack[top], actionColumn);")
+                .append(getProfileAction("\t\t\t")).append("\n\n");
+        sb.append("\t\t\tswitch (action & 0x07) {\n");
+        sb.append("\t\t\t\tcase S:\n");
+        sb.append("\t\t\t\t\treturn shift(action>>3, actionColumn, tok);\n\n");
+        sb.append("\t\t\t\tcase SR:\n");
+        sb.append("\t\t\t\t\treturn shiftReduce(action>>3, actionColumn, tok);\n\n");
+        sb.append("\t\t\t\tcase R:\n");
+        sb.append("\t\t\t\t\treduction(action>>3, stateStack[top], tok);\n");
+        sb.append("\t\t\t\t\tbreak;\n\n");
+        sb.append("\t\t\t\tcase A:\n");
+        sb.append("\t\t\t\t\treturn PushStatus.ACCEPTED;\n\n");
+        sb.append("\t\t\t\tcase E:\n");
+        sb.append("\t\t\t\t\tif ((status = error(stateStack[top], actionColumn, tok)) != null) {\n");
+        sb.append("\t\t\t\t\t\treturn status;\n");
+        sb.append("\t\t\t\t\t}\n");
+        sb.append("\t\t\t\t\tbreak;\n\n");
+        sb.append("\t\t\t\tdefault:\n");
+        sb.append("\t\t\t\t\tthrow new ParseException(\"Invalid action in action table.\", getPosition(tok));\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t\tif (debugging) {\n");
+        sb.append("\t\t\t\tprintStateStack();\n");
+        sb.append("\t\t\t}\n");
+        sb.append("\t\t}");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the statement which processes the next token in the parse
+     * loop.
+     * 
+     * @return Java code
+     */
+    private String getNextStep() {
+        if (!entryColumns.isEmpty()) {
+            return "status = pull();";
+        }
+
+        return getNextToken();
+    }
+
+    /**
+     * Generates the statement which reads the next token and processes it.
+     * 
+     * @return Java code
+     */
+    private String getNextToken() {
+        if (config.isFused()) {
+            return "status = lexer == null ? scanStep() : step(nextToken());";
+        }
+
+        return "status = step(nextToken());";
+    }
+
+    /**
+     * Generates the expression which reads the next token and returns its
+     * column in the action table.
+     * 
+     * @return Java code
+     */
+    private String getNextColumn() {
+        if (config.isFused()) {
+            return "lexer == null ? scan()\n\t\t\t\t\t\t\t\t: getActionColumn(nextToken().getType())";
+        }
+
+        return "getActionColumn(nextToken().getType())";
+    }
+
+    /**
+     * Generates the fields of the inlined lexer and its tables. The states
+     * of the lexer's automaton are mapped to columns of the action table
+     * directly.
+     * 
+     * @return Java code
+     */
+    private String getScannerFields() {
+        Map<String, Terminal> terminals = config.getTerminals();
+        int[] columns = new int[tokenList.length];
+        boolean[] usedTokens = new boolean[terminals.size()];
+        boolean[] skipped = new boolean[terminals.size()];
+        boolean[] handled = new boolean[terminals.size()];
+        StringBuilder sb = new StringBuilder(10000);
+
+        for (int i = 0; i < tokenList.length; i++) {
+            columns[i] = tokenList[i] == null ? -1 : terminals.get(
+                    tokenList[i]).getTerminalNumber();
+        }
+
+        for (Terminal terminal : terminals.values()) {
+            String code = terminal.getCode() == null ? "" : terminal.getCode()
+                    .trim();
+
+            skipped[terminal.getTerminalNumber()] = "skip();".equals(code);
+            handled[terminal.getTerminalNumber()] = code.length() > 0
+                    && !"skip();".equals(code);
+            usedTokens[terminal.getTerminalNumber()] = config.isListener();
+        }
+
+        for (Rule rule : grammar) {
+            for (int j : rule.getUsedVariables(rule.getRhsCount())) {
+                Symbol symbol = rule.getRhs(j - 1);
+
+                if (symbol instanceof Terminal) {
+                    usedTokens[((Terminal) symbol).getTerminalNumber()] = true;
+                }
+            }
+        }
+
+        sb.append("\n\n\t/* Input of the inlined lexer, used if there is no lexer */\n");
+        sb.append("\tprivate String input;\n\n");
+        sb.append("\t/* Start of the last scanned token */\n");
+        sb.append("\tprivate int tokenStart;\n\n");
+        sb.append("\t/* End of the last scanned token */\n");
+        sb.append("\tprivate int tokenEnd;");
+
+        if (contains(handled)) {
+            sb.append("\n\n\t/* Token passed to the code of a terminal, null if it is skipped */\n");
+            sb.append("\tprivate Token currentToken;");
+        }
+
+        sb.append("\n\n\t/* Transitions of the lexer's automaton by state and character event */\n\t");
+        sb.append(getStateTable().replace(" stateTable", " scanStates"));
+        sb.append("\n\n\t/* Column of the terminal accepted in each state of the lexer's automaton */\n\t");
+        sb.append(getIntArray("scanColumns", columns));
+        sb.append("\n\n\t/* Columns of the terminals whose tokens are used by the rules */\n\t");
+        sb.append(getBooleanArray("usedTokens", usedTokens));
+
+        if (contains(skipped)) {
+            sb.append("\n\n\t/* Columns of the terminals which are skipped */\n\t");
+            sb.append(getBooleanArray("skippedTokens", skipped));
+        }
+
+        if (contains(handled)) {
+            sb.append("\n\n\t/* Columns of the terminals with code */\n\t");
+            sb.append(getBooleanArray("handledTokens", handled));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the methods of the inlined lexer. The lexer scans the input
+     * string without creating tokens and returns columns of the action
+     * table. A token is only created if it is used by the code of a rule or
+     * a terminal.
+     * 
+     * @return Java code
+     */
+    private String getScanner() {
+        StringBuilder sb = new StringBuilder(5000);
+        boolean skipped = false;
+        boolean handled = false;
+
+        for (Terminal terminal : config.getTerminals().values()) {
+            String code = terminal.getCode() == null ? "" : terminal.getCode()
+                    .trim();
+
+            skipped |= "skip();".equals(code);
+            handled |= code.length() > 0 && !"skip();".equals(code);
+        }
+
+        sb.append("\n\n\t/**\n");
+        sb.append("\t * Constructor for a parser which scans its input with the inlined\n");
+        sb.append("\t * lexer. The input is passed to parse(String), tryParse(String) or\n");
+        sb.append("\t * recognize(String).\n");
+        sb.append("\t */\n");
+        sb.append("\tpublic ").append(config.getParserClass()).append("() {\n");
+        sb.append("\t}\n\n");
+
+        sb.append("\t/* Scans the next token and processes it */\n");
+        sb.append("\tprivate PushStatus scanStep() throws ParseException {\n");
+        sb.append("\t\tint column = scan();\n\n");
+        sb.append("\t\treturn step(column, scannedToken(column));\n");
+        sb.append("\t}\n\n");
+
+        sb.append("\t/**\n");
+        sb.append("\t * Scans the next token of the input and returns its column in the\n");
+        sb.append("\t * action table. The token is located between tokenStart and tokenEnd.\n");
+        sb.append("\t * \n");
+        sb.append("\t * @return    Column of the token\n");
+        sb.append("\t * @throws ParseException\n");
+        sb.append("\t */\n");
+        sb.append("\tprivate int scan() throws ParseException {\n");
+        sb.append("\t\tint length = input.length();\n");
+        sb.append("\t\tint state;\n");
+        sb.append("\t\tint column;\n");
+        sb.append("\t\tint pos;\n\n");
+        sb.append("\t\twhile (true) {\n");
+        sb.append("\t\t\ttokenStart = tokenEnd;\n");
+
+        if (handled) {
+            sb.append("\t\t\tcurrentToken = null;\n");
+        }
+
+        sb.append("\n\t\t\tif (tokenStart >= length) {\n");
+        sb.append("\t\t\t\tcountToken(tokenStart);\n");
+        sb.append("\t\t\t\treturn eofColumn;\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t\tstate = ").append(initialState).append(";\n");
+        sb.append("\t\t\tcolumn = -1;\n");
+        sb.append("\t\t\tpos = tokenStart;\n\n");
+        sb.append("\t\t\t/* Find the longest token */\n");
+        sb.append("\t\t\twhile (pos < length\n");
+        sb.append("\t\t\t\t\t&& (state = scanStates[state][scanEvent(input.charAt(pos++))]) != -1) {\n");
+        sb.append("\t\t\t\tif (scanColumns[state] != -1) {\n");
+        sb.append("\t\t\t\t\tcolumn = scanColumns[state];\n");
+        sb.append("\t\t\t\t\ttokenEnd = pos;\n");
+        sb.append("\t\t\t\t}\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t\tif (column == -1) {\n");
+        sb.append("\t\t\t\tthrow new StacklessParseException(pos, \"Parse error\");\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t\t/* Skipped tokens are counted as well to check the limits */\n");
+        sb.append("\t\t\tcountToken(tokenStart);\n");
+
+        if (skipped) {
+            sb.append("\n\t\t\tif (skippedTokens[column]) {\n");
+            sb.append("\t\t\t\tcontinue;\n");
+            sb.append("\t\t\t}\n");
+        }
+
+        if (handled) {
+            sb.append("\n\t\t\tif (handledTokens[column]) {\n");
+            sb.append("\t\t\t\thandleToken(token(column));\n\n");
+            sb.append("\t\t\t\tif (currentToken == null) {\n");
+            sb.append("\t\t\t\t\tcontinue;\n");
+            sb.append("\t\t\t\t}\n\n");
+            sb.append("\t\t\t\t/* The code may have changed the type of the token */\n");
+            sb.append("\t\t\t\tcolumn = getActionColumn(currentToken.getType());\n");
+            sb.append("\t\t\t}\n");
+        }
+
+        sb.append("\n\t\t\treturn column;\n");
+        sb.append("\t\t}\n");
+        sb.append("\t}\n\n");
+
+        sb.append("\t/* Creates the token which has been scanned last */\n");
+        sb.append("\tprivate Token token(int column) {\n");
+        sb.append("\t\treturn new Token(actions[column].ordinal(), input.substring(\n");
+        sb.append("\t\t\t\ttokenStart, tokenEnd), tokenStart);\n");
+        sb.append("\t}\n\n");
+
+        sb.append("\t/**\n");
+        sb.append("\t * Returns the token which has been scanned last if it is used by the\n");
+        sb.append("\t * rules. The token passed to the code of a terminal is returned as is.\n");
+        sb.append("\t * \n");
+        sb.append("\t * @param column Column of the token\n");
+        sb.append("\t * @return    The token or null if it isn't used\n");
+        sb.append("\t */\n");
+        sb.append("\tprivate Token scannedToken(int column) {\n");
+
+        if (handled) {
+            sb.append("\t\tif (currentToken != null) {\n");
+            sb.append("\t\t\treturn currentToken;\n");
+            sb.append("\t\t}\n\n");
+        }
+
+        sb.append("\t\treturn usedTokens[column] ? token(column) : null;\n");
+        sb.append("\t}\n\n");
+
+        if (handled) {
+            sb.append("\t/* Executes the code of a terminal */\n");
+            sb.append("\tprivate void handleToken(Token token) {\n");
+            sb.append("\t\t").append(getTokenHandler().trim()).append("\n");
+            sb.append("\t}\n\n");
+            sb.append("\t/* Skips the current token */\n");
+            sb.append("\tprivate void skip() {\n");
+            sb.append("\t\tcurrentToken = null;\n");
+            sb.append("\t}\n\n");
+        }
+
+        sb.append("\t/* Maps a character to an event of the lexer's automaton */\n");
+        sb.append("\tprivate static int scanEvent(int c) {\n");
+        sb.append("\t\t").append(getEventMapping().trim()).append("\n");
+        sb.append("\t}");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the fields which record the profile of the parser.
+     * 
+     * @return Java code, empty if no profiling code is generated
+     */
+    private String getProfileFields() {
+        if (!profiling) {
+            return "";
+        }
+
+        StringBuilder sb = new StringBuilder(1000);
+
+        sb.append("\n\n\t/* Lookups of the actions by state and column */\n");
+        sb.append("\tprivate static final java.util.concurrent.atomic.AtomicLongArray actionCounts =\n");
+        sb.append("\t\t\tnew java.util.concurrent.atomic.AtomicLongArray(")
+                .append(actionTable.length * config.getTerminals().size())
+                .append(");");
+
+        if (config.isFused()) {
+            sb.append(getRangeProfileFields());
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the fields which record the matches of the lexer's
+     * character ranges.
+     * 
+     * @return Java code
+     */
+    private String getRangeProfileFields() {
+        List<RegexCharacterRange> ranges = getCharacterRanges();
+        int[] bounds = new int[2 * ranges.size()];
+        StringBuilder sb = new StringBuilder(1000);
+
+        for (int i = 0; i < ranges.size(); i++) {
+            bounds[2 * i] = ranges.get(i).getFrom().charAt(0);
+            bounds[2 * i + 1] = ranges.get(i).getTo().charAt(0);
+        }
+
+        sb.append("\n\n\t/* First and last character of each character range of the lexer */\n\t");
+        sb.append(getIntArray("rangeBounds", bounds));
+        sb.append("\n\n\t/* Matches of the character ranges */\n");
+        sb.append("\tprivate static final java.util.concurrent.atomic.AtomicLongArray rangeCounts =\n");
+        sb.append("\t\t\tnew java.util.concurrent.atomic.AtomicLongArray(")
+                .append(ranges.size()).append(");");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the code which counts the lookup of an action.
+     * 
+     * @param indent
+     *            Indentation of the code
+     * @return Java code, empty if no profiling code is generated
+     */
+    private String getProfileAction(String indent) {
+        if (!profiling) {
+            return "";
+        }
+
+        return "\n" + indent + "profileAction(stateStack[top], actionColumn);";
+    }
+
+    /**
+     * Generates the methods which record the profile of the parser and
+     * write it.
+     * 
+     * @return Java code, empty if no profiling code is generated
+     */
+    private String getProfile() {
+        if (!profiling) {
+            return "";
+        }
+
+        StringBuilder sb = new StringBuilder(2000);
+
+        sb.append("\n\n\t/* Counts the lookup of an action */\n");
+        sb.append("\tprivate static void profileAction(int state, int column) {\n");
+        sb.append("\t\tactionCounts.incrementAndGet(state * actions.length + column);\n");
+        sb.append("\t}");
+
+        if (config.isFused()) {
+            sb.append(getRangeProfile(false));
+        }
+
+        sb.append("\n\n\t/**\n");
+        sb.append("\t * Writes the profile which has been recorded since the class has been\n");
+        sb.append("\t * loaded. The profile is passed to the generator to optimise the parser\n");
+        sb.append("\t * for the profiled inputs. The profiles of several runs may be appended\n");
+        sb.append("\t * to the same file.\n");
+        sb.append("\t * \n");
+        sb.append("\t * @param out Writer for the profile\n");
+        sb.append("\t * @throws IOException\n");
+        sb.append("\t */\n");
+        sb.append("\tpublic static void writeProfile(java.io.Writer out) throws IOException {\n");
+        sb.append("\t\tout.write(\"parser \" + actionCounts.length() / actions.length + \" \"\n");
+        sb.append("\t\t\t\t+ actions.length + \"\\n\");\n\n");
+        sb.append("\t\tfor (int i = 0; i < actionCounts.length(); i++) {\n");
+        sb.append("\t\t\tlong count = actionCounts.get(i);\n\n");
+        sb.append("\t\t\tif (count != 0) {\n");
+        sb.append("\t\t\t\tout.write(\"action \" + i / actions.length + \" \" + i % actions.length\n");
+        sb.append("\t\t\t\t\t\t+ \" \" + count + \"\\n\");\n");
+        sb.append("\t\t\t}\n");
+        sb.append("\t\t}\n\n");
+
+        if (config.isFused()) {
+            sb.append("\t\twriteRanges(out);\n\n");
+        }
+
+        sb.append("\t\tout.flush();\n");
+        sb.append("\t}");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the methods which count the matches of the lexer's
+     * character ranges and write them. The lexer writes its profile itself,
+     * the inlined lexer of a fused parser is written by the parser.
+     * 
+     * @param lexer
+     *            Generate the methods for a lexer?
+     * @return Java code
+     */
+    private String getRangeProfile(boolean lexer) {
+        StringBuilder sb = new StringBuilder(2000);
+
+        sb.append("\n\n\t/* Counts the match of a character range and returns its event */\n");
+        sb.append("\tprivate static int profileRange(int range, int event) {\n");
+        sb.append("\t\trangeCounts.incrementAndGet(range);\n");
+        sb.append("\t\treturn event;\n");
+        sb.append("\t}\n\n");
+
+        if (lexer) {
+            sb.append("\t/**\n");
+            sb.append("\t * Writes the profile which has been recorded since the class has been\n");
+            sb.append("\t * loaded. The profile is passed to the generator to optimise the lexer\n");
+            sb.append("\t * for the profiled inputs. The profiles of several runs may be appended\n");
+            sb.append("\t * to the same file, also together with the profile of the parser.\n");
+            sb.append("\t * \n");
+            sb.append("\t * @param out Writer for the profile\n");
+            sb.append("\t * @throws java.io.IOException\n");
+            sb.append("\t */\n");
+            sb.append("\tpublic static void writeProfile(java.io.Writer out) throws java.io.IOException {\n");
+        } else {
+            sb.append("\t/* Writes the matches of the character ranges */\n");
+            sb.append("\tprivate static void writeRanges(java.io.Writer out) throws IOException {\n");
+        }
+
+        sb.append("\t\tfor (int i = 0; i < rangeCounts.length(); i++) {\n");
+        sb.append("\t\t\tlong count = rangeCounts.get(i);\n\n");
+        sb.append("\t\t\tif (count != 0) {\n");
+        sb.append("\t\t\t\tout.write(\"range \" + rangeBounds[2 * i] + \" \" + rangeBounds[2 * i + 1]\n");
+        sb.append("\t\t\t\t\t\t+ \" \" + count + \"\\n\");\n");
+        sb.append("\t\t\t}\n");
+        sb.append("\t\t}\n");
+
+        if (lexer) {
+            sb.append("\n\t\tout.flush();\n");
+        }
+
+        sb.append("\t}");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the fields and tables for parsing expressions by precedence
+     * climbing.
+     * 
+     * @return Java code, empty if there are no expressions
+     */
+    private String getExpressionFields() {
+        int columns = config.getTerminals().size();
+        boolean[] operandStarts = new boolean[entryColumns.size() * columns];
+        int[] gotoColumns = new int[entryColumns.size()];
+        int[] precedences = new int[grammar.size()];
+        int[] associativities = new int[grammar.size()];
+        StringBuilder sb = new StringBuilder(2000);
+
+        if (entryColumns.isEmpty()) {
+            return "";
+        }
+
+        for (int i = 0; i < entryColumns.size(); i++) {
+            gotoColumns[i] = expressions.get(entryExpressions.get(i))
+                    .getNonTerminalNumber();
+            System.arraycopy(entryColumns.get(i), 0, operandStarts, i
+                    * columns, columns);
+        }
+
+        for (Rule rule : grammar) {
+            precedences[rule.getRuleNumber()] = rule.getPrecedenceRule()
+                    .getPrecedence();
+            associativities[rule.getRuleNumber()] = rule.getPrecedenceRule()
+                    .getAssociativity().ordinal();
+        }
+
+        sb.append("\n\n\t/* Next token while an expression is parsed by precedence climbing */\n");
+        sb.append("\tprivate Token lookahead;\n\n");
+        sb.append("\t/* Column of the lookahead in the action table */\n");
+        sb.append("\tprivate int lookaheadColumn;\n\n");
+        sb.append("\t/* Index + 1 of the entry of the expression which starts with the lookahead, 0 if none */\n");
+        sb.append("\tprivate int expression;\n\n");
+        sb.append("\t/* Whether the parser reads the tokens itself */\n");
+        sb.append("\tprivate boolean pulling;\n\n");
+        sb.append("\t/* Index + 1 of the entry which may start an expression in each state, 0 if none */\n\t");
+        sb.append(getPackedArray("expressionStates", expressionStates));
+        sb.append("\n\n\t/* Columns which start the expression, one row per entry */\n\t");
+        sb.append(getBooleanArray("operandStarts", operandStarts));
+        sb.append("\n\n\t/* Goto column of the expression's non-terminal of each entry */\n\t");
+        sb.append(getIntArray("expressionColumns", gotoColumns));
+        sb.append("\n\n\t/* Precedence of each rule */\n\t");
+        sb.append(getPackedArray("rulePrecedence", precedences));
+        sb.append("\n\n\t/* Associativity of each rule: 0 = left, 1 = right, 2 = none */\n\t");
+        sb.append(getPackedArray("ruleAssociativity", associativities));
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the code which hands an expression over to precedence
+     * climbing before its first token is shifted.
+     * 
+     * @return Java code, empty if there are no expressions
+     */
+    private String getExpressionEntry() {
+        if (entryColumns.isEmpty()) {
+            return "";
+        }
+
+        return "\n\n\t\tif (pulling && (expression = getExpression(currentState, actionColumn)) != 0) {\n"
+                + "\t\t\t/* The expression is parsed by precedence climbing */\n"
+                + "\t\t\tlookahead = tok;\n"
+                + "\t\t\tlookaheadColumn = actionColumn;\n"
+                + "\t\t\treturn PushStatus.NEED_MORE;\n"
+                + "\t\t}\n";
+    }
+
+    /**
+     * Generates the methods which parse expressions by precedence climbing.
+     * The parse loop hands an expression over if it reads the tokens itself.
+     * Each expression has a subroutine which keeps operands and operators on
+     * the stack until the precedence of the next operator shows that they
+     * can be reduced. Only nested expressions in operands are parsed
+     * recursively.
+     * 
+     * @return Java code, empty if there are no expressions
+     */
+    private String getExpressions() {
+        StringBuilder sb = new StringBuilder(5000);
+
+        if (entryColumns.isEmpty()) {
+            return "";
+        }
+
+        sb.append("\n\n\t/**\n");
+        sb.append("\t * Reads the next token and processes it. An expression which starts with\n");
+        sb.append("\t * the token is parsed by precedence climbing.\n");
+        sb.append("\t * \n");
+        sb.append("\t * @return    The status of the parse after processing the token\n");
+        sb.append("\t * @throws ParseException\n");
+        sb.append("\t */\n");
+        sb.append("\tprivate PushStatus pull() throws ParseException, IOException {\n");
+        sb.append("\t\tPushStatus status;\n\n");
+        sb.append("\t\tpulling = true;\n\n");
+        sb.append("\t\ttry {\n");
+        sb.append("\t\t\tif (expression != 0) {\n");
+        sb.append("\t\t\t\treturn parseExpression();\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t\t").append(getNextToken()).append("\n\n");
+        sb.append("\t\t\treturn status;\n");
+        sb.append("\t\t} finally {\n");
+        sb.append("\t\t\tpulling = false;\n");
+        sb.append("\t\t}\n");
+        sb.append("\t}\n\n");
+
+        sb.append("\t/**\n");
+        sb.append("\t * Parses the expression which starts with the lookahead and continues\n");
+        sb.append("\t * with the goto on its non-terminal and the token after the expression.\n");
+        sb.append("\t * \n");
+        sb.append("\t * @return    The status of the parse after processing the token\n");
+        sb.append("\t * @throws ParseException\n");
+        sb.append("\t */\n");
+        sb.append("\tprivate PushStatus parseExpression() throws ParseException, IOException {\n");
+        sb.append("\t\tint state = stateStack[top];\n");
+        sb.append("\t\tint index = expression - 1;\n\n");
+        sb.append("\t\texpression = 0;\n\n");
+        sb.append("\t\ttry {\n");
+        sb.append("\t\t\tswitch (index) {\n");
+
+        for (int e = 0; e < expressions.size(); e++) {
+            for (int i = 0; i < entryExpressions.size(); i++) {
+                if (entryExpressions.get(i) == e) {
+                    sb.append("\t\t\t\tcase ").append(i).append(":\n");
+                }
+            }
+
+            if (entryExpressions.contains(e)) {
+                sb.append("\t\t\t\t\t").append(getExpressionMethod(e))
+                        .append("(state);\n");
+                sb.append("\t\t\t\t\tbreak;\n");
+            }
+        }
+
+        sb.append("\t\t\t}\n");
+        sb.append("\t\t} catch (ParseException e) {\n");
+        sb.append("\t\t\tsyntaxError = e;\n");
+        sb.append("\t\t\treturn PushStatus.ERROR;\n");
+        sb.append("\t\t}\n\n");
+        sb.append("\t\t/* The expression's symbol is on top of the stack without a state yet */\n");
+        sb.append("\t\tstateStack[top] = getGoto(expressionColumns[index], state)>>3;\n\n");
+        sb.append("\t\treturn step(lookaheadColumn, lookahead);\n");
+        sb.append("\t}\n\n");
+
+        sb.append("\t/* Returns the index + 1 of the entry of an expression which starts with a column in a state, 0 if none */\n");
+        sb.append("\tprivate static int getExpression(int state, int column) {\n");
+        sb.append("\t\tint expression = expressionStates[state];\n\n");
+        sb.append("\t\treturn expression != 0\n");
+        sb.append("\t\t\t\t&& operandStarts[(expression - 1) * actions.length + column] ? expression : 0;\n");
+        sb.append("\t}\n\n");
+
+        for (int e = 0; e < expressions.size(); e++) {
+            if (entryExpressions.contains(e)) {
+                appendExpression(sb, e);
+            }
+        }
+
+        sb.append("\t/* Puts the lookahead on the stack and reads the next token */\n");
+        sb.append("\tprivate void shiftLookahead(int state) throws ParseException, IOException {\n");
+        sb.append("\t\tpush(state, lookahead);\n\n");
+
+        if (config.isFused()) {
+            sb.append("\t\tif (lexer == null) {\n");
+            sb.append("\t\t\tlookaheadColumn = scan();\n");
+            sb.append("\t\t\tlookahead = scannedToken(lookaheadColumn);\n");
+            sb.append("\t\t} else {\n");
+            sb.append("\t\t\tlookahead = nextToken();\n");
+            sb.append("\t\t\tlookaheadColumn = getActionColumn(lookahead.getType());\n");
+            sb.append("\t\t}\n");
+        } else {
+            sb.append("\t\tlookahead = nextToken();\n");
+            sb.append("\t\tlookaheadColumn = getActionColumn(lookahead.getType());\n");
+        }
+
+        sb.append("\t}\n\n");
+
+        sb.append("\t/* Shifts the lookahead if it is in a column of the action table */\n");
+        sb.append("\tprivate void expectLookahead(int column, int state) throws ParseException, IOException {\n");
+        sb.append("\t\tif (lookaheadColumn != column) {\n");
+        sb.append("\t\t\tthrow invalidLookahead(state);\n");
+        sb.append("\t\t}\n\n");
+        sb.append("\t\tshiftLookahead(0);\n");
+        sb.append("\t}\n\n");
+
+        sb.append("\t/* Creates an exception for an unexpected lookahead in an expression */\n");
+        sb.append("\tprivate ParseException invalidLookahead(int state) {\n");
+        sb.append("\t\treturn invalidToken(state, lookaheadColumn, ");
+        sb.append(config.isFused() ? "lookahead != null ? lookahead\n\t\t\t\t: token(lookaheadColumn)"
+                : "lookahead");
+        sb.append(");\n");
+        sb.append("\t}\n\n");
+
+        sb.append("\t/**\n");
+        sb.append("\t * Returns whether the operation on top of the stack is reduced before the\n");
+        sb.append("\t * next operator is shifted.\n");
+        sb.append("\t * \n");
+        sb.append("\t * @param pending The rule of the operation on the stack\n");
+        sb.append("\t * @param rule The rule of the next operator, -1 at the end of the expression\n");
+        sb.append("\t * @param state The state in which the expression started\n");
+        sb.append("\t * @return    true, if the operation is reduced\n");
+        sb.append("\t * @throws ParseException\n");
+        sb.append("\t */\n");
+        sb.append("\tprivate boolean reducesBefore(int pending, int rule, int state) throws ParseException {\n");
+        sb.append("\t\tif (rule == -1 || rulePrecedence[pending] > rulePrecedence[rule]) {\n");
+        sb.append("\t\t\treturn true;\n");
+        sb.append("\t\t} else if (rulePrecedence[pending] < rulePrecedence[rule]) {\n");
+        sb.append("\t\t\treturn false;\n");
+        sb.append("\t\t} else if (ruleAssociativity[pending] == 2) {\n");
+        sb.append("\t\t\t/* Operators without associativity can't follow each other */\n");
+        sb.append("\t\t\tthrow invalidLookahead(state);\n");
+        sb.append("\t\t}\n\n");
+        sb.append("\t\treturn ruleAssociativity[pending] == 0;\n");
+        sb.append("\t}\n\n");
+
+        sb.append("\t/* Reduces a rule of an expression, the symbol is pushed without a state */\n");
+        sb.append("\tprivate void reduceOperand(int rule) throws ParseException {\n");
+        sb.append("\t\tint tokCount = ruleLength[rule];\n");
+        sb.append("\t\tObject symbol;\n\n");
+        sb.append("\t\ttop -= tokCount;\n");
+        sb.append("\t\tsymbol = reduceRule(rule);\n\n");
+        sb.append("\t\tfor (int i = top + tokCount; i > top; i--) {\n");
+        sb.append("\t\t\tsymbolStack[i] = null;\n");
+        sb.append("\t\t}\n\n");
+        sb.append("\t\tif (reductionListener != null && observed[ruleLhs[rule]]) {\n");
+        sb.append("\t\t\tsymbol = reductionListener.reduced(nonTerminals[ruleLhs[rule]], symbol);\n");
+        sb.append("\t\t}\n\n");
+        sb.append("\t\tpush(0, symbol);\n");
+        sb.append("\t}");
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the name of the method which parses an expression.
+     * 
+     * @param e
+     *            Index of the expression
+     * @return Name of the method
+     */
+    private String getExpressionMethod(int e) {
+        return "expression" + capitalize(expressions.get(e).getName());
+    }
+
+    /**
+     * Appends the subroutine which parses an expression by precedence
+     * climbing. The operators on the stack are stored with their rule
+     * instead of a state.
+     * 
+     * @param sb
+     *            The code
+     * @param e
+     *            Index of the expression
+     */
+    private void appendExpression(StringBuilder sb, int e) {
+        NonTerminal nt = expressions.get(e);
+        Map<String, Terminal> terminals = config.getTerminals();
+        List<Rule> rules = getRulesForSymbolAtLhs(nt.getName());
+
+        sb.append("\t/**\n");
+        sb.append("\t * Parses an expression of ").append(nt.getName())
+                .append(" by precedence climbing.\n");
+        sb.append("\t * \n");
+        sb.append("\t * @param state The state in which the expression started\n");
+        sb.append("\t * @throws ParseException\n");
+        sb.append("\t */\n");
+        sb.append("\tprivate void ").append(getExpressionMethod(e)).append(
+                "(int state) throws ParseException, IOException {\n");
+        sb.append("\t\tint base = top;\n");
+        sb.append("\t\tint rule;\n\n");
+        sb.append("\t\twhile (true) {\n");
+        sb.append("\t\t\t/* Operand */\n");
+        sb.append("\t\t\tswitch (lookaheadColumn) {\n");
+
+        for (Rule rule : rules) {
+            if (isOperation(rule, nt)) {
+                continue;
+            }
+
+            sb.append("\t\t\t\tcase ").append(
+                    terminals.get(rule.getRhs(0).getName()).getTerminalNumber())
+                    .append(": /* ").append(getRuleText(rule)).append(" */\n");
+            sb.append("\t\t\t\t\tshiftLookahead(0);\n");
+
+            for (int i = 1; i < rule.getRhsCount(); i++) {
+                Symbol symbol = rule.getRhs(i);
+
+                if (symbol instanceof Terminal) {
+                    sb.append("\t\t\t\t\texpectLookahead(").append(
+                            terminals.get(symbol.getName()).getTerminalNumber())
+                            .append(", state);\n");
+                } else {
+                    sb.append("\t\t\t\t\t").append(getExpressionMethod(e))
+                            .append("(state);\n");
+                }
+            }
+
+            sb.append("\t\t\t\t\treduceOperand(").append(rule.getRuleNumber())
+                    .append(");\n");
+            sb.append("\t\t\t\t\tbreak;\n\n");
+        }
+
+        sb.append("\t\t\t\tdefault:\n");
+        sb.append("\t\t\t\t\tthrow invalidLookahead(state);\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t\t/* Operator */\n");
+        sb.append("\t\t\tswitch (lookaheadColumn) {\n");
+
+        for (Rule rule : rules) {
+            if (!isOperation(rule, nt)) {
+                continue;
+            }
+
+            sb.append("\t\t\t\tcase ").append(
+                    terminals.get(rule.getRhs(1).getName()).getTerminalNumber())
+                    .append(": /* ").append(getRuleText(rule)).append(" */\n");
+            sb.append("\t\t\t\t\trule = ").append(rule.getRuleNumber()).append(
+                    ";\n");
+            sb.append("\t\t\t\t\tbreak;\n\n");
+        }
+
+        sb.append("\t\t\t\tdefault:\n");
+        sb.append("\t\t\t\t\trule = -1;\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t\t/* Reduce the operations which take precedence over the next operator */\n");
+        sb.append("\t\t\twhile (top > base + 1 && reducesBefore(stateStack[top - 1], rule, state)) {\n");
+        sb.append("\t\t\t\treduceOperand(stateStack[top - 1]);\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t\tif (rule == -1) {\n");
+        sb.append("\t\t\t\treturn;\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t\tshiftLookahead(rule);\n");
+        sb.append("\t\t}\n");
+        sb.append("\t}\n\n");
+    }
+
+    /**
+     * Checks whether a flag is set.
+     * 
+     * @param flags
+     *            Flags
+     * @return true if at least one flag is set
+     */
+    private static boolean contains(boolean[] flags) {
+        for (boolean flag : flags) {
+            if (flag) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Generates code for a boolean array.
+     * 
+     * @param name
+     *            Name of the array
+     * @param values
+     *            Values
+     * @return Java code
+     */
+    private String getBooleanArray(String name, boolean[] values) {
+        String[] literals = new String[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            literals[i] = String.valueOf(values[i]);
+        }
+
+        return getArray("boolean", name, literals);
+    }
+
+    /**
+     * Generates code for an int array.
+     * 
+     * @param name
+     *            Name of the array
+     * @param values
+     *            Values
+     * @return Java code
+     */
+    private String getIntArray(String name, int[] values) {
+        String[] literals = new String[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            literals[i] = String.valueOf(values[i]);
+        }
+
+        return getArray("int", name, literals);
+    }
+
+    /**
+     * Generates code for an array which is initialised with literals.
+     * 
+     * @param type
+     *            Type of the elements
+     * @param name
+     *            Name of the array
+     * @param literals
+     *            Values
+     * @return Java code
+     */
+    private String getArray(String type, String name, String[] literals) {
+        StringBuilder sb = new StringBuilder(1000);
+        int len = LINE_LEN;
+
+        sb.append("private static final ").append(type).append("[] ").append(
+                name).append(" = {\n\t\t");
+
+        for (int i = 0; i < literals.length; i++) {
+            if (len < 0) {
+                len = LINE_LEN;
+                sb.append("\n\t\t");
+            }
+
+            sb.append(literals[i]);
+            len -= literals[i].length() + 2;
+
+            if (i < literals.length - 1) {
+                sb.append(", ");
+            }
+        }
+
+        sb.append("\n\t};");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the code which reduces a rule in the parse loop. Listeners
+     * receive the symbols instead if the listener mode is enabled.
+     * 
+     * @return Java code
+     */
+    private String getReduceRule() {
+        if (config.isListener()) {
+            /* Pass the symbols to the listener instead if there is one */
+            return "if (listener != null) {\n"
+                    + "\t\t\tsymbol = reduce(rule, tok);\n"
+                    + "\t\t} else {\n"
+                    + "\t\t\tsymbol = reduceRule(rule);\n"
+                    + "\t\t}";
+        }
+
+        return "symbol = reduceRule(rule);";
+    }
+
+    /**
+     * Generates one method per rule which executes the rule's code and a
+     * method which dispatches a rule to its method. The dispatch is split
+     * into several methods for more than {@link #DISPATCH_LEN} rules. Small
+     * methods keep the parse loop small enough to be compiled by the JIT.
+     * 
+     * @return Java code
+     * @throws ConfigException
+     */
+    private String getRuleMethods() throws ConfigException {
+        StringBuilder sb = new StringBuilder(10000);
+        int count = grammar.size();
+        int chunks = (count + DISPATCH_LEN - 1) / DISPATCH_LEN;
+
+        sb.append("\n\n\t/* Executes the code of a rule and returns the new node */\n");
+        sb.append("\tprivate Node reduceRule(int rule) throws ParseException {\n");
+
+        if (chunks > 1) {
+            sb.append("\t\tswitch (rule / ").append(DISPATCH_LEN).append(") {\n");
+
+            for (int i = 0; i < chunks; i++) {
+                sb.append("\t\t\tcase ").append(i).append(": return reduceRule")
+                        .append(i).append("(rule);\n");
+            }
+
+            sb.append("\t\t}\n\n\t\treturn null;\n\t}\n");
+
+            for (int i = 0; i < chunks; i++) {
+                sb.append("\n\tprivate Node reduceRule").append(i).append(
+                        "(int rule) throws ParseException {\n");
+                appendRuleDispatchSwitch(sb, i * DISPATCH_LEN, Math.min(count,
+                        (i + 1) * DISPATCH_LEN));
+            }
+        } else {
+            appendRuleDispatchSwitch(sb, 0, count);
+        }
+
+        for (int i = 0; i < count; i++) {
+            appendRuleMethod(sb, grammar.get(i));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Appends the switch of a rule dispatch method and closes the method.
+     * 
+     * @param sb
+     *            Generated code
+     * @param from
+     *            First rule
+     * @param to
+     *            Last rule (exclusive)
+     */
+    private void appendRuleDispatchSwitch(StringBuilder sb, int from, int to) {
+        sb.append("\t\tswitch (rule) {\n");
+
+        for (int i = from; i < to; i++) {
+            sb.append("\t\t\tcase ").append(i).append(": return rule")
+                    .append(i).append("();\n");
+        }
+
+        sb.append("\t\t}\n\n\t\treturn null;\n\t}\n");
+    }
+
+    /**
+     * Appends the method of a rule. The symbols of the rule are located
+     * above top on the stack. A rule without code passes the value of its
+     * first symbol on if it is a non-terminal whose class is assignable to
+     * the class of the rule's non-terminal.
+     * 
+     * @param sb
+     *            Generated code
+     * @param rule
+     *            A rule
+     * @throws ConfigException
+     */
+    private void appendRuleMethod(StringBuilder sb, Rule rule)
+            throws ConfigException {
+        String lhsClass = ((NonTerminal) rule.getLhs()).getClassName();
+        String lhsType = getPrimitiveType(rule.getLhs());
+        int c = rule.getRhsCount();
+        Set<Integer> usedVariables = rule.getUsedVariables(c);
+        String[] variables = new String[c];
+        boolean passThrough = c > 0 && !rule.hasCode()
+                && !isTokenSymbol(rule.getRhs(0))
+                && !rule.getLhs().getName().equals(config.getRecords())
+                && isSameValueStack(rule.getLhs(), rule.getRhs(0))
+                && (lhsType != null || isAssignable(rule.getRhs(0), rule
+                        .getLhs()));
+
+        sb.append("\n\t/* ").append(rule.toString().trim()).append(" */\n");
+        sb.append("\tprivate ").append(lhsType != null ? "Node" : lhsClass)
+                .append(" rule").append(rule.getRuleNumber()).append(
+                        "() throws ParseException {\n");
+
+        if (passThrough) {
+            if (lhsType != null) {
+                /* The value is already in place on the value stack */
+                sb.append("\t\treturn null;\n");
+            } else {
+                sb.append("\t\treturn (").append(lhsClass).append(
+                        ") symbolStack[top + 1];\n");
+            }
+
+            sb.append("\t}\n");
+            return;
+        }
+
+        sb.append("\t\t").append(lhsClass).append(" node = ").append(
+                lhsType != null ? "0" : "null").append(";\n\n");
+
+        if (rule.getLhs().getName().equals(config.getRecords())) {
+            appendRecords(sb, rule);
+        }
+
+        for (int j = 1; j <= c; j++) {
+            if (!usedVariables.contains(j)) {
+                continue;
+            }
+
+            Symbol symbol = rule.getRhs(j - 1);
+            String symbolClass = (symbol instanceof Terminal ? Token.class
+                    .getCanonicalName() : ((NonTerminal) symbol)
+                    .getClassName());
+            String symbolType = getPrimitiveType(symbol);
+            String varName = "n" + j;
+            variables[j - 1] = varName;
+
+            if (symbolType != null) {
+                sb.append("\t\t").append(symbolType).append(" ").append(
+                        varName).append(" = ").append(symbolType).append(
+                        "Stack[top + ").append(j).append("];\n");
+            } else {
+                sb.append("\t\t").append(symbolClass).append(" ").append(
+                        varName).append(" = ((").append(symbolClass).append(
+                        ")symbolStack[top + ").append(j).append("]);\n");
+            }
+        }
+
+        sb.append("\t\t").append(rule.getCode("node", variables)).append("\n");
+
+        if (lhsType != null) {
+            sb.append("\t\tstore").append(capitalize(lhsType)).append(
+                    "(node);\n");
+            sb.append("\t\treturn null;\n");
+        } else {
+            sb.append("\t\treturn node;\n");
+        }
+
+        sb.append("\t}\n");
+    }
+
+    /**
+     * Returns the primitive type of a non-terminal whose values are kept on
+     * a value stack instead of the symbol stack.
+     * 
+     * @param symbol
+     *            A symbol
+     * @return A primitive type or null if the values are objects
+     */
+    private String getPrimitiveType(Symbol symbol) {
+        if (isTokenSymbol(symbol)) {
+            return null;
+        }
+
+        String className = ((NonTerminal) symbol).getClassName();
+
+        return PRIMITIVE_TYPES.contains(className) ? className : null;
+    }
+
+    /**
+     * Checks whether the values of two symbols are kept on the same stack,
+     * i.e. whether a value can be passed on without conversion.
+     * 
+     * @param s1
+     *            A symbol
+     * @param s2
+     *            Another symbol
+     * @return True if both are objects or of the same primitive type
+     */
+    private boolean isSameValueStack(Symbol s1, Symbol s2) {
+        String t1 = getPrimitiveType(s1);
+        String t2 = getPrimitiveType(s2);
+
+        return t1 == null ? t2 == null : t1.equals(t2);
+    }
+
+    /**
+     * Returns whether the value of a non-terminal can be used as value of
+     * another one without a cast. This is the case if both have the same
+     * class or the class of the first one is a subclass of the second one.
+     * Classes which can't be loaded by the generator are only assignable to
+     * themselves and Object.
+     * 
+     * @param from
+     *            A non-terminal
+     * @param to
+     *            The non-terminal to which the value is assigned
+     * @return true, if the value is assignable
+     */
+    private boolean isAssignable(Symbol from, Symbol to) {
+        String fromClass = ((NonTerminal) from).getClassName();
+        String toClass = ((NonTerminal) to).getClassName();
+
+        if (fromClass.equals(toClass) || "Object".equals(toClass)
+                || "java.lang.Object".equals(toClass)) {
+            return true;
+        }
+
+        Class<?> c1 = loadClass(fromClass);
+        Class<?> c2 = loadClass(toClass);
+
+        return c1 != null && c2 != null && c2.isAssignableFrom(c1);
+    }
+
+    /**
+     * Loads the class of a non-terminal. A simple name is resolved by the
+     * imports, the package of the parser and java.lang.
+     * 
+     * @param name
+     *            Name of the class
+     * @return The class or null if it can't be loaded
+     */
+    private Class<?> loadClass(String name) {
+        List<String> candidates = new ArrayList<String>();
+
+        candidates.add(name);
+
+        if (name.indexOf('.') == -1) {
+            for (String imp : config.getImports()) {
+                imp = imp.trim();
+
+                if (imp.endsWith("." + name)) {
+                    candidates.add(imp);
+                } else if (imp.endsWith(".*")) {
+                    candidates.add(imp.substring(0, imp.length() - 1) + name);
+                }
+            }
+
+            if (config.getParserPackage() != null) {
+                candidates.add(config.getParserPackage() + "." + name);
+            }
+
+            candidates.add("java.lang." + name);
+        }
+
+        for (String candidate : candidates) {
+            try {
+                return Class.forName(candidate, false, getClass()
+                        .getClassLoader());
+            } catch (ClassNotFoundException e) {
+                /* Try the next candidate */
+            } catch (LinkageError e) {
+                /* Try the next candidate */
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the primitive types of all non-terminals.
+     * 
+     * @return A set of primitive types
+     */
+    private Set<String> getPrimitiveTypes() {
+        Set<String> types = new HashSet<String>();
+
+        for (Rule rule : grammar) {
+            String type = getPrimitiveType(rule.getLhs());
+
+            if (type != null) {
+                types.add(type);
+            }
+        }
+
+        return types;
+    }
+
+    /**
+     * Converts the first character of a string to upper case.
+     * 
+     * @param str
+     *            A string
+     * @return The capitalized string
+     */
+    private String capitalize(String str) {
+        return Character.toUpperCase(str.charAt(0)) + str.substring(1);
+    }
+
+    /**
+     * Generates a value stack for each primitive type of a non-terminal. The
+     * value of a non-terminal is at the same index as its state.
+     * 
+     * @return Java code
+     */
+    private String getValueStacks() {
+        StringBuilder sb = new StringBuilder(500);
+
+        for (String type : PRIMITIVE_TYPES) {
+            if (getPrimitiveTypes().contains(type)) {
+                sb.append("\n\n\t/* Values of the non-terminals of type ")
+                        .append(type).append(" */\n");
+                sb.append("\tprivate ").append(type).append("[] ").append(
+                        type).append("Stack = new ").append(type).append(
+                        "[STACK_SIZE];");
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the methods which store the value of a reduced non-terminal
+     * on a value stack and a method which returns the value of the root
+     * symbol if it is of a primitive type. Values are computed while parsing
+     * and no nodes are created for them.
+     * 
+     * @return Java code
+     */
+    private String getValueMethods() {
+        StringBuilder sb = new StringBuilder(2000);
+        String rootType = getPrimitiveType(getAcceptRules().get(0).getRhs(0));
+
+        for (String type : PRIMITIVE_TYPES) {
+            if (!getPrimitiveTypes().contains(type)) {
+                continue;
+            }
+
+            String stack = type + "Stack";
+
+            sb.append("\n\n\t/* Stores the value of the non-terminal which is pushed next */\n");
+            sb.append("\tprivate void store").append(capitalize(type))
+                    .append("(").append(type).append(" value) {\n");
+            sb.append("\t\tif (top + 1 >= ").append(stack).append(
+                    ".length) {\n");
+            sb.append("\t\t\t").append(type).append("[] values = new ")
+                    .append(type).append("[2 * stateStack.length];\n");
+            sb.append("\t\t\tSystem.arraycopy(").append(stack).append(
+                    ", 0, values, 0, ").append(stack).append(".length);\n");
+            sb.append("\t\t\t").append(stack).append(" = values;\n");
+            sb.append("\t\t}\n\n");
+            sb.append("\t\t").append(stack).append("[top + 1] = value;\n");
+            sb.append("\t}");
+        }
+
+        if (rootType != null) {
+            sb.append("\n\n\t/**\n");
+            sb.append("\t * Parses code and returns the value of the root symbol. The value\n");
+            sb.append("\t * is computed by the rules while parsing and no syntax tree is built.\n");
+            sb.append("\t * \n");
+            sb.append("\t * @return    Value of the root symbol\n");
+            sb.append("\t * @throws ParseException\n");
+            sb.append("\t */\n");
+            sb.append("\tpublic ").append(rootType).append(
+                    " parseValue() throws ParseException, IOException {\n");
+            sb.append("\t\tparse();\n\n");
+            sb.append("\t\treturn ").append(rootType).append("Stack[1];\n");
+            sb.append("\t}");
+
+            sb.append("\n\n\t/**\n");
+            sb.append("\t * Resets the input to {@code input} and returns the value of the root\n");
+            sb.append("\t * symbol.\n");
+            sb.append("\t * \n");
+            sb.append("\t * @param input Code to parse\n");
+            sb.append("\t * @return    Value of the root symbol\n");
+            sb.append("\t * @throws ParseException\n");
+            sb.append("\t */\n");
+            sb.append("\tpublic ").append(rootType).append(
+                    " parseValue(String input) throws ParseException, IOException {\n");
+            sb.append("\t\tresetInput(input);\n\n");
+            sb.append("\t\treturn parseValue();\n");
+            sb.append("\t}");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns the class of the root node of a parse started with the first
+     * accept symbol. The root node is the first symbol of the accept rule.
+     * 
+     * @return A class name
+     */
+    private String getRootClass() {
+        Symbol symbol = getAcceptRules().get(0).getRhs(0);
+
+        if (isTokenSymbol(symbol) || getPrimitiveType(symbol) != null) {
+            return "Node";
+        }
+
+        return ((NonTerminal) symbol).getClassName();
+    }
+
+    /**
+     * Generates an enum of the accept symbols with their initial states. The
+     * initial states are the first states of the automaton in the order of
+     * the accept rules.
+     * 
+     * @return Java code
+     */
+    private String getStartSymbols() {
+        StringBuilder sb = new StringBuilder(500);
+        List<Rule> acceptRules = getAcceptRules();
+
+        sb.append("/**\n");
+        sb.append("\t * The accept symbols with which a parse can start.\n");
+        sb.append("\t */\n");
+        sb.append("\tpublic enum StartSymbol {\n\t\t");
+
+        for (int i = 0; i < acceptRules.size(); i++) {
+            sb.append(i > 0 ? ", " : "");
+            sb.append(acceptRules.get(i).getLhs().getName()).append("(")
+                    .append(i).append(")");
+        }
+
+        sb.append(";\n\n");
+        sb.append("\t\tprivate final int initialState;\n\n");
+        sb.append("\t\tprivate StartSymbol(int initialState) {\n");
+        sb.append("\t\t\tthis.initialState = initialState;\n");
+        sb.append("\t\t}\n");
+        sb.append("\t}");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the code which collects the records of a rule of the
+     * repetition non-terminal while iterating over records. The rule's code
+     * isn't executed and no node is created for it, so the value of the
+     * repetition non-terminal is null.
+     * 
+     * @param sb
+     *            The code of the rule switch
+     * @param rule
+     *            A rule of the repetition non-terminal
+     */
+    private void appendRecords(StringBuilder sb, Rule rule) {
+        sb.append("\t\tif (records != null) {\n");
+
+        for (int j = 1; j <= rule.getRhsCount(); j++) {
+            Symbol symbol = rule.getRhs(j - 1);
+
+            if (!isTokenSymbol(symbol) && getPrimitiveType(symbol) == null
+                    && !symbol.getName().equals(config.getRecords())) {
+                sb.append("\t\t\trecords.add((Node) symbolStack[top + ")
+                        .append(j).append("]);\n");
+            }
+        }
+
+        sb.append("\t\t\treturn null;\n");
+        sb.append("\t\t}\n\n");
+    }
+
+    /**
+     * Generates the method which iterates over the records of the repetition
+     * non-terminal.
+     * 
+     * @return Java code
+     */
+    private String getRecords() {
+        StringBuilder sb = new StringBuilder(3000);
+
+        sb.append("\n\n\t/**\n");
+        sb.append("\t * Parses code and returns an iterator over the records of ")
+                .append(config.getRecords()).append(". The\n");
+        sb.append("\t * input is parsed as far as necessary to return the next record and\n");
+        sb.append("\t * the records aren't kept by the parser. A syntax error is thrown as\n");
+        sb.append("\t * UncheckedParseException by the iterator, as well as an exceeded limit.\n");
+        sb.append("\t * The rules which contain ").append(config.getRecords()).append(
+                " receive null for it, since\n");
+        sb.append("\t * the records aren't collected in a node.\n");
+        sb.append("\t * \n");
+        sb.append("\t * @return    An iterator over the records\n");
+        sb.append("\t */\n");
+        sb.append("\tpublic java.util.Iterator<Node> records() {\n");
+        sb.append("\t\tfinal List<Node> queue = new java.util.LinkedList<Node>();\n\n");
+        sb.append("\t\ttry {\n");
+        sb.append("\t\t\tbegin(0);\n");
+        sb.append("\t\t} catch (ParseException e) {\n");
+        sb.append("\t\t\tthrow new UncheckedParseException(e);\n");
+        sb.append("\t\t}\n\n");
+        sb.append("\t\trecords = queue;\n\n");
+        sb.append("\t\treturn new java.util.Iterator<Node>() {\n\n");
+        sb.append("\t\t\tpublic boolean hasNext() {\n");
+        sb.append("\t\t\t\tPushStatus status;\n\n");
+        sb.append("\t\t\t\twhile (queue.isEmpty() && records == queue) {\n");
+        sb.append("\t\t\t\t\ttry {\n");
+        sb.append("\t\t\t\t\t\t").append(getNextStep()).append("\n");
+        sb.append("\t\t\t\t\t} catch (ParseException e) {\n");
+        sb.append("\t\t\t\t\t\tstop(PushStatus.ERROR);\n");
+        sb.append("\t\t\t\t\t\tthrow new UncheckedParseException(e);\n");
+        sb.append("\t\t\t\t\t} catch (IOException e) {\n");
+        sb.append("\t\t\t\t\t\tstop(PushStatus.ERROR);\n");
+        sb.append("\t\t\t\t\t\tthrow new UncheckedParseException(e);\n");
+        sb.append("\t\t\t\t\t}\n\n");
+        sb.append("\t\t\t\t\tif (status == PushStatus.ERROR) {\n");
+        sb.append("\t\t\t\t\t\tstop(status);\n");
+        sb.append("\t\t\t\t\t\tthrow new UncheckedParseException(syntaxError);\n");
+        sb.append("\t\t\t\t\t} else if (status == PushStatus.ACCEPTED) {\n");
+        sb.append("\t\t\t\t\t\tstop(status);\n");
+        sb.append("\t\t\t\t\t}\n");
+        sb.append("\t\t\t\t}\n\n");
+        sb.append("\t\t\t\treturn !queue.isEmpty();\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t\tpublic Node next() {\n");
+        sb.append("\t\t\t\tif (!hasNext()) {\n");
+        sb.append("\t\t\t\t\tthrow new java.util.NoSuchElementException();\n");
+        sb.append("\t\t\t\t}\n\n");
+        sb.append("\t\t\t\treturn queue.remove(0);\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t\tpublic void remove() {\n");
+        sb.append("\t\t\t\tthrow new UnsupportedOperationException();\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t\t/* Ends the parse, the remaining records can still be returned */\n");
+        sb.append("\t\t\tprivate void stop(PushStatus status) {\n");
+        sb.append("\t\t\t\tend(status);\n");
+        sb.append("\t\t\t\trecords = null;\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t};\n");
+        sb.append("\t}");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the fields for the listener mode.
+     * 
+     * @return Java code
+     */
+    private String getListenerFields() {
+        StringBuilder sb = new StringBuilder(500);
+
+        sb.append("\n\n\t/* Receives the reductions in listener mode */\n");
+        sb.append("\tprivate Listener<Object> listener;\n\n");
+        sb.append("\t/* Start and end position of the symbols on the stack in listener mode */\n");
+        sb.append("\tprivate int[] spanStack;");
+
+        return sb.toString();
+    }
+
+    /**
+     * Generates the listener interface with one method per rule, the parse
+     * method for the listener mode and the method which passes a reduced
+     * rule to the listener. Terminals are passed as tokens and non-terminals
+     * as the values returned by the listener for them. The code of the rules
+     * isn't executed.
+     * 
+     * @return Java code
+     */
+    private String getListener() {
+        StringBuilder sb = new StringBuilder(10000);
+        StringBuilder sw = new StringBuilder(5000);
+        Map<String, Integer> alternatives = new HashMap<String, Integer>();
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+
+        for (Rule r : grammar) {
+            if (!r.isAccept()) {
+                String name = r.getLhs().getName();
+                Integer count = counts.get(name);
+                counts.put(name, count == null ? 1 : count + 1);
+            }
+        }
+
+        sb.append("\n\n\t/**\n");
+        sb.append("\t * Receives the reductions of a parse in listener mode. Each method is\n");
+        sb.append("\t * called after its rule has been reduced with the tokens of the terminals,\n");
+        sb.append("\t * the values returned for the non-terminals and the start and end\n");
+        sb.append("\t * position of the rule in the input. The returned value represents the\n");
+        sb.append("\t * non-terminal on the left-hand side.\n");
+        sb.append("\t */\n");
+        sb.append("\tpublic interface Listener<V> {\n");
+
+        for (int i = 0; i < grammar.size(); i++) {
+            Rule r = grammar.get(i);
+            int c = r.getRhsCount();
+
+            if (r.isAccept()) {
+                continue;
+            }
+
+            String name = r.getLhs().getName();
+            Integer alternative = alternatives.get(name);
+            alternative = alternative == null ? 1 : alternative + 1;
+            alternatives.put(name, alternative);
+
+            String method = "reduce" + Character.toUpperCase(name.charAt(0))
+                    + name.substring(1)
+                    + (counts.get(name) > 1 ? alternative : "");
+
+            sb.append("\n\t\t/* ").append(getRuleText(r)).append(" */\n");
+            sb.append("\t\tV ").append(method).append("(");
+
+            sw.append("\t\t\tcase ").append(i).append(":\n");
+
+            if (c == 0) {
+                /* An empty rule starts and ends before the next token */
+                sw.append("\t\t\t\tstart = tok.getPosition();\n");
+                sw.append("\t\t\t\tend = start;\n");
+            } else {
+                if (isTokenSymbol(r.getRhs(0))) {
+                    sw.append("\t\t\t\tstart = ((Token) symbolStack[top + 1]).getPosition();\n");
+                } else {
+                    sw.append("\t\t\t\tstart = spanStack[2 * (top + 1)];\n");
+                }
+
+                if (isTokenSymbol(r.getRhs(c - 1))) {
+                    sw.append("\t\t\t\tend = getEnd((Token) symbolStack[top + ")
+                            .append(c).append("]);\n");
+                } else {
+                    sw.append("\t\t\t\tend = spanStack[2 * (top + ").append(c)
+                            .append(") + 1];\n");
+                }
+            }
+
+            sw.append("\t\t\t\tvalue = listener.").append(method).append("(");
+
+            for (int j = 1; j <= c; j++) {
+                boolean token = isTokenSymbol(r.getRhs(j - 1));
+
+                sb.append(token ? "Token" : "V").append(" n").append(j)
+                        .append(", ");
+                sw.append(token ? "(Token) " : "").append("symbolStack[top + ")
+                        .append(j).append("], ");
+            }
+
+            sb.append("int start, int end);\n");
+            sw.append("start, end);\n");
+            sw.append("\t\t\t\tbreak;\n");
+        }
+
+        sb.append("\n\t}\n\n");
+
+        sb.append("\t/**\n");
+        sb.append("\t * Parses code and passes the reductions to a listener instead of building\n");
+        sb.append("\t * a syntax tree.\n");
+        sb.append("\t * \n");
+        sb.append("\t * @param listener A listener\n");
+        sb.append("\t * @return    Value of the first symbol of the accepting rule\n");
+        sb.append("\t * @throws ParseException\n");
+        sb.append("\t */\n");
+        sb.append("\t@SuppressWarnings(\"unchecked\")\n");
+        sb.append("\tpublic <V> V parse(Listener<V> listener) throws ParseException, IOException {\n");
+        sb.append("\t\tif (spanStack == null) {\n");
+        sb.append("\t\t\tspanStack = new int[2 * stateStack.length];\n");
+        sb.append("\t\t}\n\n");
+        sb.append("\t\tthis.listener = (Listener<Object>) listener;\n\n");
+        sb.append("\t\ttry {\n");
+        sb.append("\t\t\tObject root = doParse(0);\n\n");
+        sb.append("\t\t\tif (syntaxError != null) {\n");
+        sb.append("\t\t\t\tthrow syntaxError;\n");
+        sb.append("\t\t\t}\n\n");
+        sb.append("\t\t\treturn (V) root;\n");
+        sb.append("\t\t} finally {\n");
+        sb.append("\t\t\tthis.listener = null;\n");
+        sb.append("\t\t}\n");
+        sb.append("\t}\n\n");
+
+        sb.append("\t/**\n");
+        sb.append("\t * Passes the symbols of a reduced rule to the listener. The symbols are\n");
+        sb.append("\t * located above top on the stack and the span of the rule is stored\n");
+        sb.append("\t * where the non-terminal will be pushed.\n");
+        sb.append("\t * \n");
+        sb.append("\t * @param rule The reduced rule\n");
+        sb.append("\t * @param tok The next token\n");
+        sb.append("\t * @return    The value of the non-terminal\n");
+        sb.append("\t */\n");
+        sb.append("\tprivate Object reduce(int rule, Token tok) {\n");
+        sb.append("\t\tint start;\n");
+        sb.append("\t\tint end;\n");
+        sb.append("\t\tObject value;\n\n");
+        sb.append("\t\tswitch (rule) {\n");
+        sb.append(sw);
+        sb.append("\t\t\tdefault:\n");
+        sb.append("\t\t\t\treturn null;\n");
+        sb.append("\t\t}\n\n");
+        sb.append("\t\tif (2 * top + 3 >= spanStack.length) {\n");
+        sb.append("\t\t\tint[] spans = new int[Math.max(2 * spanStack.length, 2 * top + 4)];\n\n");
+        sb.append("\t\t\tSystem.arraycopy(spanStack, 0, spans, 0, spanStack.length);\n");
+        sb.append("\t\t\tspanStack = spans;\n");
+        sb.append("\t\t}\n\n");
+        sb.append("\t\tspanStack[2 * (top + 1)] = start;\n");
+        sb.append("\t\tspanStack[2 * (top + 1) + 1] = end;\n\n");
+        sb.append("\t\treturn value;\n");
+        sb.append("\t}\n\n");
+
+        sb.append("\t/* Returns the position after the last character of a token */\n");
+        sb.append("\tprivate static int getEnd(Token tok) {\n");
+        sb.append("\t\treturn tok.getPosition()\n");
+        sb.append("\t\t\t\t+ (tok.getBuffer() == null ? 0 : tok.getBuffer().length());\n");
+        sb.append("\t}");
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns whether a symbol is represented by a token on the parser's
+     * stack. This is the case for terminals and EOF.
+     * 
+     * @param symbol
+     *            A symbol
+     * @return true, if the symbol is represented by a token
+     */
+    private boolean isTokenSymbol(Symbol symbol) {
+        return symbol instanceof Terminal || Config.EOF.equals(symbol.getName());
+    }
+
+    /**
+     * Returns a rule in grammar notation without its number.
+     * 
+     * @param rule
+     *            A rule
+     * @return The rule
+     */
+    private String getRuleText(Rule rule) {
+        StringBuilder sb = new StringBuilder(50);
+
+        sb.append(rule.getLhs().getName()).append(":");
+
+        for (int i = 0; i < rule.getRhsCount(); i++) {
+            sb.append(" ").append(rule.getRhs(i).getName());
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Builds the action and goto table.
+     * 
+     * @throws ConfigException
+     *             if the profile doesn't match the tables
+     */
+    private void buildParseTables() throws ConfigException {
+        Map<String, Terminal> terminals = config.getTerminals();
+        Map<String, NonTerminal> nonTerminals = config.getNonTerminals();
+        int rows = states.size();
+        int actionCols = terminals.size();
+        int gotoCols = nonTerminals.size();
+        Action gotoState[];
+        Action actionState[];
+        actionTable = new Action[rows][];
+        gotoTable = new Action[rows][];
+        lookaheads = new LalrLookaheads(states, grammar, terminals);
+
+        for (int i = 0; i < states.size(); i++) {
+            gotoState = new Action[gotoCols];
+            actionState = new Action[actionCols];
+            State s = states.get(i);
+
+            Action reductionAction = processItem(gotoState, actionState, s);
+
+            /*
+             * All undefined events lead to the state's default reduction. An
+             * unexpected token is still detected before it is shifted.
+             */
+            if (reductionAction != null) {
+                for (int c = 0; c < actionCols; c++) {
+                    if (actionState[c] == null) {
+                        actionState[c] = reductionAction;
+                    }
+                }
+            }
+
+            /**
+             * Set all undefined table cells to the error action.
+             */
+            for (int c = 0; c < actionCols; c++) {
+                if (actionState[c] == null) {
+                    actionState[c] = new Action(Action.ActionType.Error, -1);
+                }
+            }
+
+            for (int c = 0; c < gotoCols; c++) {
+                if (gotoState[c] == null) {
+                    gotoState[c] = new Action(Action.ActionType.Error, -1);
+                }
+            }
+
+            actionTable[i] = actionState;
+            gotoTable[i] = gotoState;
+        }
+
+        if (isPrecedenceClimbing()) {
+            findExpressions();
+        }
+
+        if (config.isEliminateUnitRules() && !config.isListener()) {
+            eliminateUnitRules();
+        }
+
+        if (isDefaultReductions()) {
+            addShiftReductions();
+        }
+
+        if ((config.isEliminateUnitRules() || isDefaultReductions())
+                && !config.isListener()) {
+            removeUnreachableStates();
+        }
+
+        if (isProfiled() && profile.hasParser()) {
+            applyProfile();
+        }
+
+        if (config.getParserMode() == ParserMode.TABLE) {
+            packParseTables();
+        }
+    }
+
+    /**
+     * Bypasses the reductions of unit rules which pass their symbol on. A
+     * state whose only action is the reduction of such a rule A: B is reached
+     * by a goto on B from a state p. The goto is replaced by the goto on A
+     * from p, so the parser continues as if it had already reduced A. Chains
+     * of unit rules are followed to their end.
+     */
+    private void eliminateUnitRules() {
+        int rows = actionTable.length;
+        Rule[] unitRules = new Rule[rows];
+
+        for (int r = 0; r < rows; r++) {
+            unitRules[r] = getUnitRule(actionTable[r]);
+        }
+
+        for (int p = 0; p < rows; p++) {
+            for (int c = 0; c < gotoTable[p].length; c++) {
+                if (gotoTable[p][c].getType() != Action.ActionType.Goto) {
+                    continue;
+                }
+
+                int q = gotoTable[p][c].getIndex();
+
+                /* The chain length is limited in case of cyclic unit rules */
+                for (int i = 0; i < rows && unitRules[q] != null; i++) {
+                    Action lhsGoto = gotoTable[p][((NonTerminal) unitRules[q]
+                            .getLhs()).getNonTerminalNumber()];
+
+                    if (lhsGoto.getType() != Action.ActionType.Goto) {
+                        break;
+                    }
+
+                    q = lhsGoto.getIndex();
+                }
+
+                /* Actions may be shared between states, so they are replaced */
+                gotoTable[p][c] = new Action(Action.ActionType.Goto, q);
+            }
+        }
+    }
+
+    /**
+     * Replaces the shifts into states which reduce the same rule for every
+     * token by shift-reductions of the rule. Such a state doesn't need to be
+     * entered since its reduction removes it from the stack again. This only
+     * holds if the reduced rule ends with the shifted terminal, i.e. the
+     * state's kernel item is A: a t . for the terminal t. Other reductions,
+     * e.g. of empty rules, need the state on the stack to look up their goto.
+     * Shifts of the error token are kept because error recovery looks for
+     * states which shift it.
+     */
+    private void addShiftReductions() {
+        Terminal error = config.getTerminals().get(Config.ERROR);
+        int errorColumn = error == null ? -1 : error.getTerminalNumber();
+        int rows = actionTable.length;
+        Action[] reductions = new Action[rows];
+
+        for (int r = 0; r < rows; r++) {
+            reductions[r] = getDefaultReduction(actionTable[r]);
+        }
+
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < actionTable[r].length; c++) {
+                Action action = actionTable[r][c];
+
+                if (c != errorColumn
+                        && action.getType() == Action.ActionType.Shift
+                        && reductions[action.getIndex()] != null
+                        && endsWithTerminal(grammar.get(reductions[action
+                                .getIndex()].getIndex()), c)) {
+                    /* Actions may be shared between states, so they are replaced */
+                    actionTable[r][c] = new Action(
+                            Action.ActionType.ShiftReduce,
+                            reductions[action.getIndex()].getIndex());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the right-hand side of a rule ends with a terminal.
+     * 
+     * @param rule
+     *            The rule
+     * @param column
+     *            Column of the terminal in the action table
+     * @return true, if the last symbol of the rule is the terminal
+     */
+    private boolean endsWithTerminal(Rule rule, int column) {
+        if (rule.getRhsCount() == 0) {
+            return false;
+        }
+
+        Symbol last = rule.getRhs(rule.getRhsCount() - 1);
+
+        return last instanceof Terminal
+                && ((Terminal) last).getTerminalNumber() == column;
+    }
+
+    /**
+     * Returns the reduction of a state if the state reduces the same rule
+     * for every token.
+     * 
+     * @param actions
+     *            The state's row in the action table
+     * @return The reduction or null
+     */
+    private Action getDefaultReduction(Action[] actions) {
+        for (Action action : actions) {
+            if (action.getType() != Action.ActionType.Reduce
+                    || !action.equals(actions[0])) {
+                return null;
+            }
+        }
+
+        return actions.length > 0 ? actions[0] : null;
+    }
+
+    /**
+     * Returns whether states with a single reduction reduce without
+     * lookahead. Empty rules need the next token in listener mode, therefore
+     * the setting is ignored in combination with listener.
+     * 
+     * @return true, if default reductions are enabled
+     */
+    private boolean isDefaultReductions() {
+        return config.isDefaultReductions() && !config.isListener();
+    }
+
+    /**
+     * Returns the unit rule which is reduced by a state if it is the only
+     * action of the state.
+     * 
+     * @param actions
+     *            The state's row in the action table
+     * @return The unit rule or null
+     */
+    private Rule getUnitRule(Action[] actions) {
+        Rule unitRule = null;
+
+        for (Action action : actions) {
+            if (action.getType() == Action.ActionType.Error) {
+                continue;
+            } else if (action.getType() != Action.ActionType.Reduce) {
+                return null;
+            }
+
+            Rule rule = grammar.get(action.getIndex());
+
+            if (unitRule == null) {
+                if (rule.getRhsCount() != 1
+                        || !(rule.getRhs(0) instanceof NonTerminal)
+                        || Config.EOF.equals(rule.getRhs(0).getName())
+                        || !rule.isPassThrough()
+                        || !isSameValueStack(rule.getLhs(), rule.getRhs(0))
+                        || (!rule.hasCode() && getPrimitiveType(rule.getLhs()) == null
+                                && !isAssignable(rule.getRhs(0), rule.getLhs()))
+                        || rule.getLhs().getName().equals(config.getRecords())) {
+                    return null;
+                }
+
+                unitRule = rule;
+            } else if (unitRule != rule) {
+                return null;
+            }
+        }
+
+        return unitRule;
+    }
+
+    /**
+     * Returns whether operator expressions are parsed by precedence
+     * climbing. The subroutines neither report the positions of the symbols
+     * to listeners nor recover from errors, therefore the setting is ignored
+     * in combination with listener and the error token.
+     * 
+     * @return true, if precedence climbing is enabled
+     */
+    private boolean isPrecedenceClimbing() {
+        return config.isPrecedenceClimbing() && !config.isListener()
+                && config.getTerminals().get(Config.ERROR) == null;
+    }
+
+    /**
+     * Finds the non-terminals which are parsed by precedence climbing and the
+     * states in which their expressions start.
+     */
+    private void findExpressions() {
+        List<NonTerminal> nonTerminals = new ArrayList<NonTerminal>(config
+                .getNonTerminals().values());
+
+        Collections.sort(nonTerminals, new Comparator<NonTerminal>() {
+            public int compare(NonTerminal nt1, NonTerminal nt2) {
+                return nt1.getNonTerminalNumber() - nt2.getNonTerminalNumber();
+            }
+        });
+
+        for (NonTerminal nt : nonTerminals) {
+            if (isExpression(nt)) {
+                expressions.add(nt);
+            }
+        }
+
+        expressionStates = new int[states.size()];
+
+        for (int e = 0; e < expressions.size(); e++) {
+            for (int s = 0; s < states.size(); s++) {
+                if (expressionStates[s] != 0) {
+                    continue;
+                }
+
+                boolean[] columns = getExpressionStarts(s, expressions.get(e));
+
+                if (!contains(columns)) {
+                    continue;
+                }
+
+                int entry = 0;
+
+                while (entry < entryColumns.size()
+                        && (entryExpressions.get(entry) != e || !Arrays.equals(
+                                entryColumns.get(entry), columns))) {
+                    entry++;
+                }
+
+                if (entry == entryColumns.size()) {
+                    entryExpressions.add(e);
+                    entryColumns.add(columns);
+                }
+
+                expressionStates[s] = entry + 1;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a non-terminal can be parsed by precedence climbing.
+     * Its rules must either be operations <code>X: X op X</code> with
+     * distinct operators or operands which start and end with a terminal and
+     * contain only terminals and the non-terminal itself. The operands must
+     * start with distinct terminals and a nested expression mustn't be
+     * followed by an operator.
+     * 
+     * @param nt
+     *            A non-terminal
+     * @return true, if the non-terminal is an expression
+     */
+    private boolean isExpression(NonTerminal nt) {
+        List<Rule> rules = getRulesForSymbolAtLhs(nt.getName());
+        Set<String> operators = getOperators(nt);
+        Set<String> operandStarts = new HashSet<String>();
+        int operations = 0;
+
+        if (nt.getName().equals(config.getRecords())) {
+            return false;
+        }
+
+        for (Rule rule : rules) {
+            if (isOperation(rule, nt)) {
+                operations++;
+                continue;
+            }
+
+            int last = rule.getLastRhsPosition();
+
+            if (rule.isAccept() || last < 0
+                    || !(rule.getRhs(0) instanceof Terminal)
+                    || !(rule.getRhs(last) instanceof Terminal)
+                    || !operandStarts.add(rule.getRhs(0).getName())) {
+                return false;
+            }
+
+            for (int i = 1; i < last; i++) {
+                Symbol symbol = rule.getRhs(i);
+
+                if (symbol instanceof Terminal) {
+                    continue;
+                } else if (!symbol.getName().equals(nt.getName())
+                        || operators.contains(rule.getRhs(i + 1).getName())) {
+                    return false;
+                }
+            }
+        }
+
+        return operations > 0 && operations == operators.size()
+                && !operandStarts.isEmpty();
+    }
+
+    /**
+     * Checks whether a rule is a binary operation <code>X: X op X</code>.
+     * 
+     * @param rule
+     *            A rule
+     * @param nt
+     *            The non-terminal X
+     * @return true, if the rule is an operation
+     */
+    private boolean isOperation(Rule rule, NonTerminal nt) {
+        return rule.getRhsCount() == 3
+                && rule.getRhs(0) instanceof NonTerminal
+                && rule.getRhs(0).getName().equals(nt.getName())
+                && rule.getRhs(1) instanceof Terminal
+                && rule.getRhs(2) instanceof NonTerminal
+                && rule.getRhs(2).getName().equals(nt.getName());
+    }
+
+    /**
+     * Returns the operators of the operations of a non-terminal.
+     * 
+     * @param nt
+     *            A non-terminal
+     * @return Names of the operators
+     */
+    private Set<String> getOperators(NonTerminal nt) {
+        Set<String> operators = new HashSet<String>();
+
+        for (Rule rule : getRulesForSymbolAtLhs(nt.getName())) {
+            if (isOperation(rule, nt)) {
+                operators.add(rule.getRhs(1).getName());
+            }
+        }
+
+        return operators;
     }
 
     /**
-     * Generates code for a list to map states to tokens.
+     * Returns the terminals with which an expression starts in a state. Such
+     * a terminal starts an operand and is only shifted by the operands'
+     * rules. After the goto on the non-terminal, the operators must only be
+     * shifted by the operations. Thereby, the subroutine parses the same
+     * tokens as the parse tables.
      * 
-     * @return Java code
+     * @param s
+     *            Number of the state
+     * @param nt
+     *            The non-terminal of the expression
+     * @return The columns of the terminals in the action table
      */
-    private String getTokenList() {
-        StringBuilder sb = new StringBuilder(10000);
-        String enumName = getTerminalEnum();
-        int len = LINE_LEN;
+    private boolean[] getExpressionStarts(int s, NonTerminal nt) {
+        Map<String, Terminal> terminals = config.getTerminals();
+        Action gotoAction = gotoTable[s][nt.getNonTerminalNumber()];
+        Set<String> operators = getOperators(nt);
+        boolean[] columns = new boolean[terminals.size()];
 
-        sb.append("public final " + enumName + "[] tokenList = {\n\t\t");
+        if (gotoAction.getType() != Action.ActionType.Goto) {
+            return columns;
+        }
 
-        for (int i = 0; i < tokenList.length; i++) {
-            if (len < 0) {
-                len = LINE_LEN;
-                sb.append("\n\t\t");
+        int g = gotoAction.getIndex();
+
+        for (Item item : states.get(g).getItems()) {
+            Symbol symbol = item.getCurrentSymbol();
+
+            if (!(symbol instanceof Terminal)
+                    || !operators.contains(symbol.getName())) {
+                continue;
             }
 
-            String tokenName = tokenList[i] == null ? "null" : enumName + "."
-                    + tokenList[i];
-            sb.append(tokenName);
+            if (item.getPosition() != 1 || !isOperation(item.getRule(), nt)
+                    || actionTable[g][terminals.get(symbol.getName())
+                            .getTerminalNumber()].getType() != Action.ActionType.Shift) {
+                return columns;
+            }
+        }
 
-            len -= tokenName.length() + 2;
+        for (Item item : states.get(s).getItems()) {
+            Symbol symbol = item.getCurrentSymbol();
 
-            if (i < tokenList.length - 1) {
-                sb.append(", ");
+            if (symbol instanceof Terminal
+                    && startsOperand(nt, symbol.getName())) {
+                columns[terminals.get(symbol.getName()).getTerminalNumber()] = true;
             }
         }
 
-        sb.append("\n\t};");
+        for (Item item : states.get(s).getItems()) {
+            Symbol symbol = item.getCurrentSymbol();
 
-        return sb.toString();
+            if (!(symbol instanceof Terminal)) {
+                continue;
+            }
+
+            int column = terminals.get(symbol.getName()).getTerminalNumber();
+
+            if (item.getPosition() != 0
+                    || !item.getRule().getLhs().getName().equals(nt.getName())
+                    || actionTable[s][column].getType() != Action.ActionType.Shift) {
+                columns[column] = false;
+            }
+        }
+
+        return columns;
     }
 
     /**
-     * Generates code to map from character events to event numbers.
+     * Checks whether a terminal starts an operand of an expression.
      * 
-     * @return Java code
+     * @param nt
+     *            The non-terminal of the expression
+     * @param terminal
+     *            Name of the terminal
+     * @return true, if an operand starts with the terminal
      */
-    private String getEventMapping() {
-        StringBuilder sb = new StringBuilder(1000);
-        boolean firstIf = true;
-
-        for (RegexCharacterRange key : eventMap.keySet()) {
-            int eventNumber = eventMap.get(key);
-            if (firstIf) {
-                firstIf = false;
-            } else {
-                sb.append(" else ");
-            }
-            if (key.getFrom().equals(key.getTo())) {
-                sb.append("if(c == ").append((int) key.getFrom().charAt(0))
-                        .append(") {\n");
-            } else {
-                sb.append("if(c >= ").append((int) key.getFrom().charAt(0))
-                        .append(" && c <= ")
-                        .append((int) key.getTo().charAt(0)).append(") {\n");
+    private boolean startsOperand(NonTerminal nt, String terminal) {
+        for (Rule rule : getRulesForSymbolAtLhs(nt.getName())) {
+            if (!isOperation(rule, nt)
+                    && rule.getRhs(0).getName().equals(terminal)) {
+                return true;
             }
-            sb.append("\t\t\treturn ").append(eventNumber).append(";\n");
-            sb.append("\t\t}");
         }
 
-        sb.append(" else {\n");
-        sb.append("\t\t\treturn " + eventMap.size() + ";\n");
-        sb.append("\t\t}\n");
-
-        return sb.toString();
+        return false;
     }
 
     /**
-     * Generates code for the action table.
-     * 
-     * @return Java code
+     * Removes the states which can't be reached from an initial state anymore
+     * and renumbers the remaining states.
      */
-    private String getActionTable() {
-        HashMap<String, Terminal> terminals = config.getTerminals();
-        StringBuilder sb = new StringBuilder(500);
+    private void removeUnreachableStates() {
         int rows = actionTable.length;
-        int cols = terminals.size();
+        int[] newStates = new int[rows];
+        List<Integer> reachable = new ArrayList<Integer>();
 
-        sb.append("return new int[][] {\n");
+        Arrays.fill(newStates, -1);
 
-        for (int r = 0; r < rows; r++) {
-            sb.append("\t\t\t{ ");
-            for (int c = 0; c < cols; c++) {
-                Action a = actionTable[r][c];
-                if (c > 0) {
-                    sb.append(", ");
+        for (int r = 0; r < getAcceptRules().size(); r++) {
+            newStates[r] = reachable.size();
+            reachable.add(r);
+        }
+
+        for (int i = 0; i < reachable.size(); i++) {
+            int r = reachable.get(i);
+
+            for (Action[] row : new Action[][] { actionTable[r], gotoTable[r] }) {
+                for (Action action : row) {
+                    if ((action.getType() == Action.ActionType.Shift || action
+                            .getType() == Action.ActionType.Goto)
+                            && newStates[action.getIndex()] == -1) {
+                        newStates[action.getIndex()] = reachable.size();
+                        reachable.add(action.getIndex());
+                    }
                 }
-                sb.append(a.encode());
-            }
-            if (r < rows - 1) {
-                sb.append(" }, \n");
-            } else {
-                sb.append(" }\n");
             }
         }
 
-        sb.append("\t\t};\n");
-
-        return sb.toString();
+        Collections.sort(reachable);
+        renumberStates(reachable);
     }
 
     /**
-     * Generates code for the action index array.
+     * Renumbers the states. States which aren't contained in the new order
+     * are removed.
      * 
-     * @return Java code
+     * @param order
+     *            The old numbers of the states in their new order
      */
-    private String getActionTableIndex() {
-        return getTableIndex(actionTableIndex);
-    }
+    private void renumberStates(List<Integer> order) {
+        int[] newStates = new int[actionTable.length];
+        Action[][] actions = new Action[order.size()][];
+        Action[][] gotos = new Action[order.size()][];
+        int[] entries = new int[order.size()];
+
+        for (int i = 0; i < order.size(); i++) {
+            newStates[order.get(i)] = i;
+        }
 
-    /**
-     * Generate code for the goto table.
-     * 
-     * @return Java code
-     */
-    private String getGotoTable() {
-        HashMap<String, NonTerminal> nonTerminals = config.getNonTerminals();
-        StringBuilder sb = new StringBuilder(500);
-        int rows = gotoTable.length;
-        int cols = nonTerminals.size();
+        for (int i = 0; i < order.size(); i++) {
+            actions[i] = actionTable[order.get(i)];
+            gotos[i] = gotoTable[order.get(i)];
+
+            if (expressionStates != null) {
+                entries[i] = expressionStates[order.get(i)];
+            }
 
-        sb.append("return new int[][] {\n");
+            for (Action[] row : new Action[][] { actions[i], gotos[i] }) {
+                for (int c = 0; c < row.length; c++) {
+                    Action action = row[c];
 
-        for (int r = 0; r < rows; r++) {
-            sb.append(" \t\t\t{ ");
-            for (int c = 0; c < cols; c++) {
-                Action a = gotoTable[r][c];
-                if (c > 0) {
-                    sb.append(", ");
+                    if (action.getType() == Action.ActionType.Shift
+                            || action.getType() == Action.ActionType.Goto) {
+                        row[c] = new Action(action.getType(), newStates[action
+                                .getIndex()]);
+                    }
                 }
-                sb.append(a.encode());
-            }
-            if (r < rows - 1) {
-                sb.append(" }, \n");
-            } else {
-                sb.append(" }\n");
             }
         }
 
-        sb.append("\t\t};");
+        actionTable = actions;
+        gotoTable = gotos;
 
-        return sb.toString();
+        if (expressionStates != null) {
+            expressionStates = entries;
+        }
     }
 
     /**
-     * Generates code for the goto index array.
+     * Returns whether the generated code is optimised for a profile.
      * 
-     * @return Java code
+     * @return true, if there is a profile and no profiling code is generated
      */
-    private String getGotoTableIndex() {
-        return getTableIndex(gotoTableIndex);
+    private boolean isProfiled() {
+        return profile != null && !profiling;
     }
 
     /**
-     * Generates code for an index array.
+     * Renumbers the states by the profile and selects the states which are
+     * coded directly in a table-driven parser. Starting with the most
+     * frequently visited state, the states are ordered along their most
+     * frequent shifts, so that the rows of successive states are stored next
+     * to each other. The initial states keep their numbers.
      * 
-     * @return Java code
+     * @throws ConfigException
+     *             if the profile doesn't match the tables
      */
-    private String getTableIndex(int[] table) {
-        StringBuilder sb = new StringBuilder(500);
-        int rows = table.length;
-
-        sb.append("return new int[] {");
+    private void applyProfile() throws ConfigException {
+        int rows = actionTable.length;
+        boolean[] placed = new boolean[rows];
+        long[] visits = new long[rows];
+        List<Integer> order = new ArrayList<Integer>();
+        long total = 0;
+
+        if (profile.getStates() != rows
+                || profile.getColumns() != config.getTerminals().size()) {
+            throw new ConfigException("the profile has been recorded by a "
+                    + "parser with different parse tables");
+        }
 
         for (int r = 0; r < rows; r++) {
-            if (r > 0) {
-                sb.append(", ");
+            visits[r] = profile.getStateCount(r);
+            total += visits[r];
+        }
+
+        for (int r = 0; r < getAcceptRules().size(); r++) {
+            order.add(r);
+            placed[r] = true;
+        }
+
+        while (true) {
+            int state = -1;
+
+            for (int r = 0; r < rows; r++) {
+                if (!placed[r] && visits[r] > 0
+                        && (state == -1 || visits[r] > visits[state])) {
+                    state = r;
+                }
             }
-            if (r % 15 == 0) {
-                sb.append("\n\t\t\t");
+
+            if (state == -1) {
+                break;
             }
-            sb.append(table[r]);
-        }
 
-        sb.append("\n\t\t};");
+            while (state != -1) {
+                order.add(state);
+                placed[state] = true;
+                state = getMostFrequentSuccessor(state, placed);
+            }
+        }
 
-        return sb.toString();
-    }
+        for (int r = 0; r < rows; r++) {
+            if (!placed[r]) {
+                order.add(r);
+            }
+        }
 
-    /**
-     * Generates code to reduce rules.
-     * 
-     * @return Java code
-     * @throws ConfigException
-     */
-    private String getRuleSwitch() throws ConfigException {
-        StringBuilder sb = new StringBuilder(1000);
-        int varCount = 1;
+        renumberStates(order);
 
-        sb.append("switch(action>>3) {\n");
+        final long[] newVisits = new long[rows];
+        Integer[] byVisits = new Integer[rows];
+        long covered = 0;
 
-        for (int i = 0; i < grammar.size(); i++) {
-            Rule r = grammar.get(i);
-            int c = r.getRhsCount();
-            Set<Integer> usedVariables = r.getUsedVariables(c);
-            String[] variables = new String[c];
+        for (int i = 0; i < rows; i++) {
+            newVisits[i] = visits[order.get(i)];
+            byVisits[i] = i;
+        }
 
-            sb.append("\t\t\t\t\t\tcase ").append(i).append(":\n");
-            sb.append("\t\t\t\t\t\t    //").append(r.toString()).append("\n");
+        Arrays.sort(byVisits, new Comparator<Integer>() {
+            public int compare(Integer s1, Integer s2) {
+                return Long.valueOf(newVisits[s2]).compareTo(newVisits[s1]);
+            }
+        });
 
-            for (int j = 1; j <= c; j++) {
-                if (!usedVariables.contains(j)) {
-                    continue;
-                }
+        hotStates = new boolean[rows];
 
-                Symbol symbol = r.getRhs(j - 1);
-                String symbolClass = (symbol instanceof Terminal ? Token.class
-                        .getCanonicalName() : ((NonTerminal) symbol)
-                        .getClassName());
-                String varName = "n" + varCount++;
-                variables[j - 1] = varName;
-                sb.append("\t\t\t\t\t\t\t").append(symbolClass).append(" ")
-                        .append(varName).append(" = ((").append(symbolClass)
-                        .append(")ps[").append((j - 1)).append(
-                                "].getSymbol());\n");
+        for (int i = 0; i < rows && i < HOT_STATES; i++) {
+            if (newVisits[byVisits[i]] == 0
+                    || covered * 100 >= total * HOT_SHARE) {
+                break;
             }
 
-            sb.append("\t\t\t\t\t\t\t").append(r.getCode("node", variables))
-                    .append("\n");
-            sb.append("\t\t\t\t\t\t\tbreak;\n");
+            hotStates[byVisits[i]] = true;
+            covered += newVisits[byVisits[i]];
         }
+    }
 
-        sb.append("\t\t\t\t\t}");
+    /**
+     * Returns the state which is most frequently entered from a state by a
+     * shift according to the profile.
+     * 
+     * @param state
+     *            The state
+     * @param placed
+     *            States which are excluded
+     * @return The successor, -1 if there is none
+     */
+    private int getMostFrequentSuccessor(int state, boolean[] placed) {
+        int successor = -1;
+        long max = 0;
+
+        for (int c = 0; c < actionTable[state].length; c++) {
+            Action action = actionTable[state][c];
+            long count = profile.getActionCount(state, c);
+
+            if (action.getType() == Action.ActionType.Shift
+                    && !placed[action.getIndex()] && count > max) {
+                successor = action.getIndex();
+                max = count;
+            }
+        }
 
-        return sb.toString();
+        return successor;
     }
 
     /**
-     * Builds the action and goto table.
+     * Returns whether a state is coded directly in a table-driven parser.
+     * 
+     * @param state
+     *            The state
+     * @return true, if the state is coded directly
      */
-    private void buildParseTables() {
-        Map<String, Terminal> terminals = config.getTerminals();
-        Map<String, NonTerminal> nonTerminals = config.getNonTerminals();
-        int rows = states.size();
-        int actionCols = terminals.size();
-        int gotoCols = nonTerminals.size();
-        Action gotoState[];
-        Action actionState[];
-        gotoTableIndex = new int[rows];
-        actionTableIndex = new int[rows];
-        List<Action[]> gotoList = new ArrayList<Action[]>();
-        List<Action[]> actionList = new ArrayList<Action[]>();
-        Set<Action> allActionsTheSame;
-
-        for (int i = 0; i < states.size(); i++) {
-            gotoState = new Action[gotoCols];
-            actionState = new Action[actionCols];
-            allActionsTheSame = new HashSet<Action>();
-            State s = states.get(i);
+    private boolean isHotState(int state) {
+        return hotStates != null && hotStates[state];
+    }
 
-            Action reductionAction = processItem(gotoState, actionState, s);
+    /**
+     * Compresses the action and goto table. The default action of a state is
+     * its most frequent reduction, or an error if the state doesn't reduce.
+     * The goto table is compressed per non-terminal with the most frequent
+     * goto as default.
+     */
+    private void packParseTables() {
+        int rows = actionTable.length;
+        int actionCols = config.getTerminals().size();
+        int gotoCols = config.getNonTerminals().size();
+        int[][] actions = new int[rows][actionCols];
+        int[] actionDefaults = new int[rows];
+        int[][] gotos = new int[gotoCols][rows];
+        int[] gotoDefaults = new int[gotoCols];
 
-            for (Item item : s.getItems()) {
-                allActionsTheSame.add(item.getAction());
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < actionCols; c++) {
+                actions[r][c] = actionTable[r][c].encode();
             }
 
-            /*
-             * On a reduce action all undefined events must lead to the
-             * reduction.
-             */
-            if (reductionAction != null) {
-                for (int c = 0; c < actionCols; c++) {
-                    if (actionState[c] == null) {
-                        actionState[c] = reductionAction;
-                        allActionsTheSame.add(reductionAction);
-                    }
-                }
+            actionDefaults[r] = getDefaultAction(actionTable[r],
+                    Action.ActionType.Reduce);
 
-                reductionAction = null;
+            /* The actions of directly coded states aren't looked up */
+            if (isHotState(r)) {
+                Arrays.fill(actions[r], actionDefaults[r]);
             }
+        }
 
-            /**
-             * Set all undefined table cells to the error action.
-             */
-            for (int c = 0; c < actionCols; c++) {
-                Action error = new Action(Action.ActionType.Error, -1);
-                if (actionState[c] == null) {
-                    actionState[c] = error;
-                    allActionsTheSame.add(error);
-                }
-            }
+        for (int c = 0; c < gotoCols; c++) {
+            Action[] column = new Action[rows];
 
-            for (int c = 0; c < gotoCols; c++) {
-                if (gotoState[c] == null) {
-                    gotoState[c] = new Action(Action.ActionType.Error, -1);
-                }
+            for (int r = 0; r < rows; r++) {
+                column[r] = gotoTable[r][c];
             }
 
+            gotoDefaults[c] = getDefaultAction(column, Action.ActionType.Goto);
+
             /*
-             * Update index tables and compress goto and action tables. 
+             * A goto is only looked up after a reduction in a state which has
+             * a goto for the reduced non-terminal. Therefore, the error
+             * entries don't have to be stored.
              */
-            int actionIndex = lookup(actionList, actionState);
-
-            if (actionIndex == -1) {
-                if (allActionsTheSame.size() == 1) {
-                    actionTableIndex[i] = (actionState[0].encode()) << 1;
-                    actionTableIndex[i] |= 1;
+            for (int r = 0; r < rows; r++) {
+                if (column[r].getType() == Action.ActionType.Error) {
+                    gotos[c][r] = gotoDefaults[c];
                 } else {
-                    actionTableIndex[i] = actionList.size() << 1;
-                    actionList.add(actionState);
+                    gotos[c][r] = column[r].encode();
                 }
-            } else {
-                actionTableIndex[i] = actionIndex << 1;
             }
+        }
 
-            int gotoIndex = lookup(gotoList, gotoState);
+        packedActionTable = new PackedTable(actions, actionDefaults);
+        packedGotoTable = new PackedTable(gotos, gotoDefaults);
+    }
 
-            if (gotoIndex == -1) {
-                gotoTableIndex[i] = gotoList.size();
-                gotoList.add(gotoState);
-            } else {
-                gotoTableIndex[i] = gotoIndex;
+    /**
+     * Returns the most frequent action of a given type.
+     * 
+     * @param actions
+     *            A row or column of a table
+     * @param type
+     *            Type of the default action
+     * @return The encoded default action, an error if there is no action of
+     *         the requested type
+     */
+    private int getDefaultAction(Action[] actions, Action.ActionType type) {
+        Action defaultAction = getMostFrequentAction(actions, type);
+
+        return defaultAction == null ? 0 : defaultAction.encode();
+    }
+
+    /**
+     * Returns the most frequent action of a given type.
+     * 
+     * @param actions
+     *            A row or column of a table, undefined cells may be null
+     * @param type
+     *            Type of the action
+     * @return The most frequent action or null if there is no action of the
+     *         requested type
+     */
+    private Action getMostFrequentAction(Action[] actions,
+            Action.ActionType type) {
+        Map<Action, Integer> counts = new HashMap<Action, Integer>();
+        Action mostFrequentAction = null;
+        int maxCount = 0;
+
+        for (Action action : actions) {
+            if (action != null && action.getType() == type) {
+                Integer count = counts.get(action);
+                counts.put(action, count == null ? 1 : count + 1);
+            }
+        }
+
+        for (Action action : actions) {
+            Integer count = counts.get(action);
+
+            if (count != null && count > maxCount) {
+                mostFrequentAction = action;
+                maxCount = count;
             }
         }
 
-        gotoTable = gotoList.toArray(new Action[][] {});
-        actionTable = actionList.toArray(new Action[][] {});
+        return mostFrequentAction;
     }
 
     /**
+     * Enters the actions of a state's items into its rows of the action and
+     * goto table. A reduction is entered in the columns of its lookaheads.
+     * Shift/reduce conflicts are solved by the precedence of the rules,
+     * reduce/reduce conflicts in favour of the rule which is defined first.
+     * 
      * @param gotoState
+     *            Row of the goto table
      * @param actionState
+     *            Row of the action table
      * @param s
-     * @return
+     *            A state
+     * @return The default reduction, i.e. the reduction which occupies the
+     *         most columns, or null if the state doesn't reduce
      */
     private Action processItem(Action[] gotoState, Action[] actionState, State s) {
         Map<String, Terminal> terminals = config.getTerminals();
         Map<String, NonTerminal> nonTerminals = config.getNonTerminals();
-        Action reductionAction = null;
-        PrecedenceRule reducePr = null;
-        final int SHIFT = 0x1;
-        final int REDUCE = 0x2;
-        int actions = 0;
+        List<Item> reductions = new ArrayList<Item>();
+        boolean shifts = false;
+        boolean conflict = false;
 
         for (Item item : s.getItems()) {
             Action action = item.getAction();
@@ -1160,76 +4235,111 @@ public class Generator {
                         .getNonTerminalNumber();
                 gotoState[symbolPos] = action;
             } else if (action.getType() == Action.ActionType.Reduce) {
-                reductionAction = action;
-                reducePr = item.getRule().getPrecedenceRule();
-                actions |= REDUCE;
+                reductions.add(item);
             } else {
                 int symbolPos = terminals
                         .get(item.getCurrentSymbol().getName())
                         .getTerminalNumber();
                 actionState[symbolPos] = action;
-                actions |= SHIFT;
+                shifts = true;
             }
 
         }
 
-        if (actions == (REDUCE | SHIFT)) {
-            System.err.println("shift/reduce conflict detected: ");
-            System.err.println(s);
+        if (!shifts && reductions.size() == 1) {
+            return reductions.get(0).getAction();
+        }
 
-            Action error = new Action(Action.ActionType.Error, -1);
-
-            for (Item item : s.getItems()) {
-                Action action = item.getAction();
-
-                if (action.getType() == Action.ActionType.Shift) {
-                    PrecedenceRule shiftPr = item.getRule().getPrecedenceRule();
-
-                    if (reducePr != null && shiftPr != null) {
-                        int symbolPos = terminals.get(
-                                item.getCurrentSymbol().getName())
-                                .getTerminalNumber();
-                        if (reducePr.getPrecedence() > shiftPr.getPrecedence()) {
-                            actionState[symbolPos] = reductionAction;
-                            item.setAction(reductionAction);
-                        } else if (reducePr.getPrecedence() == shiftPr
-                                .getPrecedence()) {
-                            if (reducePr.getAssociativity() == Associativity.LEFTASSOC) {
-                                actionState[symbolPos] = reductionAction;
-                                item.setAction(reductionAction);
-                            } else if (reducePr.getAssociativity() == Associativity.NONASSOC) {
-                                actionState[symbolPos] = error;
-                                item.setAction(error);
-                            }
-                        }
+        for (Item reduction : reductions) {
+            Action reductionAction = reduction.getAction();
+            BitSet la = lookaheads.getLookaheads(s, reduction.getRule());
+
+            for (int t = la.nextSetBit(0); t >= 0; t = la.nextSetBit(t + 1)) {
+                Action action = actionState[t];
+
+                if (action == null) {
+                    actionState[t] = reductionAction;
+                } else if (action.getType() == Action.ActionType.Reduce) {
+                    if (!conflict) {
+                        System.err.println("reduce/reduce conflict detected: ");
+                        System.err.println(s);
+                        conflict = true;
                     }
+
+                    if (reductionAction.getIndex() < action.getIndex()) {
+                        actionState[t] = reductionAction;
+                    }
+                } else if (action.getType() != Action.ActionType.Error) {
+                    if (!conflict) {
+                        System.err.println("shift/reduce conflict detected: ");
+                        System.err.println(s);
+                        conflict = true;
+                    }
+
+                    actionState[t] = solveShiftReduceConflict(s, t,
+                            action, reduction);
                 }
             }
+        }
 
+        if (conflict) {
             System.err.println("solved as follows: ");
             System.err.println(s);
         }
 
-        return reductionAction;
+        return reductions.isEmpty() ? null : getMostFrequentAction(
+                actionState, Action.ActionType.Reduce);
     }
 
     /**
-     * Searches in a list of state for a state with the same actions.
+     * Solves a shift/reduce conflict on a terminal by the precedence of the
+     * rules. Without precedence the terminal is shifted.
      * 
-     * @param list
-     *            List with an array of actions per state
-     * @param array
-     *            An array of actions
-     * @return Index of the matching state or -1 if none was found 
+     * @param s
+     *            A state
+     * @param terminal
+     *            Number of the terminal
+     * @param shiftAction
+     *            The shift action
+     * @param reduction
+     *            The reduced item
+     * @return The action for the terminal
      */
-    private int lookup(List<Action[]> list, Action[] array) {
-        for (int i = 0; i < list.size(); i++) {
-            if (Arrays.deepEquals(list.get(i), array)) {
-                return i;
+    private Action solveShiftReduceConflict(State s, int terminal,
+            Action shiftAction, Item reduction) {
+        Map<String, Terminal> terminals = config.getTerminals();
+        Action reductionAction = reduction.getAction();
+        PrecedenceRule reducePr = reduction.getRule().getPrecedenceRule();
+        Action error = new Action(Action.ActionType.Error, -1);
+
+        for (Item item : s.getItems()) {
+            Action action = item.getAction();
+
+            if (action.getType() != Action.ActionType.Shift
+                    || terminals.get(item.getCurrentSymbol().getName())
+                            .getTerminalNumber() != terminal) {
+                continue;
+            }
+
+            PrecedenceRule shiftPr = item.getRule().getPrecedenceRule();
+
+            if (reducePr != null && shiftPr != null) {
+                if (reducePr.getPrecedence() > shiftPr.getPrecedence()) {
+                    item.setAction(reductionAction);
+                    return reductionAction;
+                } else if (reducePr.getPrecedence() == shiftPr.getPrecedence()) {
+                    if (reducePr.getAssociativity() == Associativity.LEFTASSOC) {
+                        item.setAction(reductionAction);
+                        return reductionAction;
+                    } else if (reducePr.getAssociativity() == Associativity.NONASSOC) {
+                        item.setAction(error);
+                        return error;
+                    }
+                }
             }
         }
 
-        return -1;
+        return shiftAction;
     }
 
     /**
@@ -1274,10 +4384,12 @@ public class Generator {
             matchingRules = getRulesForSymbolAtLhs(sym);
 
             for (Rule rule : matchingRules) {
-                sym = rule.getRhs(0).getName();
-                if (!alreadyKnownSymbols.contains(sym)) {
-                    symbols.push(sym);
-                    alreadyKnownSymbols.add(sym);
+                if (rule.getRhsCount() > 0) {
+                    sym = rule.getRhs(0).getName();
+                    if (!alreadyKnownSymbols.contains(sym)) {
+                        symbols.push(sym);
+                        alreadyKnownSymbols.add(sym);
+                    }
                 }
                 allRules.add(rule);
             }
@@ -1294,15 +4406,24 @@ public class Generator {
      * @return Rules that produce {@code sym}
      */
     private List<Rule> getRulesForSymbolAtLhs(String sym) {
-        List<Rule> matchingRules = new ArrayList<Rule>();
+        if (rulesByLhs == null) {
+            rulesByLhs = new HashMap<String, List<Rule>>();
 
-        for (Rule r : grammar) {
-            if (r.getLhs().getName().equals(sym)) {
-                matchingRules.add(r);
+            for (Rule r : grammar) {
+                List<Rule> rules = rulesByLhs.get(r.getLhs().getName());
+
+                if (rules == null) {
+                    rules = new ArrayList<Rule>();
+                    rulesByLhs.put(r.getLhs().getName(), rules);
+                }
+
+                rules.add(r);
             }
         }
 
-        return matchingRules;
+        List<Rule> matchingRules = rulesByLhs.get(sym);
+
+        return matchingRules == null ? new ArrayList<Rule>() : matchingRules;
     }
 
     /**
@@ -1322,6 +4443,10 @@ public class Generator {
         System.out.println("\t-g <grammar-rules> (mandatory)");
         System.out.println("\t-b <build directory>");
         System.out.println("\t-l (generate a lexer class)");
+        System.out.println("\t-p <parser class> (overrides parser-class)");
+        System.out.println("\t-m table|direct (overrides parser-mode)");
+        System.out.println("\t-r (generate code which records a profile)");
+        System.out.println("\t-f <profile> (optimise the code for a profile)");
         System.out.println("\t-v");
         System.exit(1);
     }
@@ -1333,8 +4458,12 @@ public class Generator {
         Generator g;
         String grammar = null;
         String buildDir = null;
+        String parserClass = null;
+        ParserMode parserMode = null;
+        String profile = null;
         boolean verbose = false;
         boolean generateLexer = false;
+        boolean profiling = false;
 
         for (int i = 0; i < args.length; i++) {
             if (!args[i].startsWith("-") || args[i].length() != 2) {
@@ -1344,6 +4473,8 @@ public class Generator {
                 verbose = true;
             } else if (args[i].charAt(1) == 'l') {
                 generateLexer = true;
+            } else if (args[i].charAt(1) == 'r') {
+                profiling = true;
             } else {
                 if (i + 1 == args.length) {
                     printUsage();
@@ -1362,6 +4493,20 @@ public class Generator {
                             printUsage();
                         }
                         break;
+                    case 'p':
+                        parserClass = args[++i];
+                        break;
+                    case 'f':
+                        profile = args[++i];
+                        break;
+                    case 'm':
+                        try {
+                            parserMode = ParserMode.valueOf(args[++i]
+                                    .toUpperCase());
+                        } catch (IllegalArgumentException e) {
+                            printUsage();
+                        }
+                        break;
                     default:
                         printUsage();
                 }
@@ -1375,6 +4520,20 @@ public class Generator {
         try {
 
             g = new Generator(grammar);
+
+            if (parserClass != null) {
+                g.setParserClass(parserClass);
+            }
+
+            if (parserMode != null) {
+                g.setParserMode(parserMode);
+            }
+
+            if (profile != null) {
+                g.setProfile(profile);
+            }
+
+            g.setProfiling(profiling);
             g.run(buildDir, generateLexer);
 
             if (verbose) {
@@ -0,0 +1,401 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the LALR(1) lookaheads of the reductions in an LR(0) automaton with
+ * the method of DeRemer and Pennello.
+ * <p>
+ * The lookaheads are computed for the transitions (p, A) of the automaton on
+ * a non-terminal A. Read(p, A) contains the terminals which can be read after
+ * the transition, either directly or after reducing nullable non-terminals.
+ * Follow(p, A) additionally contains the terminals which can follow a
+ * non-terminal B if A is at the end of a rule for B. Both relations are
+ * evaluated with a single traversal each. The lookaheads of a reduction of a
+ * rule for A in state q are the union of Follow(p, A) over all states p from
+ * which q is reached by reading the rule's right-hand side.
+ */
+public class LalrLookaheads {
+
+    /** Terminals of the grammar by name */
+    private Map<String, Terminal> terminals;
+
+    /** Successors of each state per symbol */
+    private List<Map<String, Integer>> successors;
+
+    /** Non-terminal transitions of each state per non-terminal */
+    private List<Map<String, Integer>> transitions;
+
+    /** Source state of each non-terminal transition */
+    private List<Integer> transitionStates = new ArrayList<Integer>();
+
+    /** Non-terminal of each non-terminal transition */
+    private List<String> transitionSymbols = new ArrayList<String>();
+
+    /** Rules per non-terminal on the left-hand side */
+    private Map<String, List<Rule>> rules = new HashMap<String, List<Rule>>();
+
+    /** Non-terminals which derive the empty string */
+    private Set<String> nullable = new HashSet<String>();
+
+    /** Non-terminal transitions to look back to for each reduction */
+    private List<Map<Rule, List<Integer>>> lookbacks;
+
+    /** Follow set of each non-terminal transition */
+    private BitSet[] follow;
+
+    /**
+     * Constructor.
+     * 
+     * @param states
+     *            States of the LR(0) automaton with their actions
+     * @param grammar
+     *            Rules of the grammar
+     * @param terminals
+     *            Terminals of the grammar by name
+     */
+    public LalrLookaheads(List<State> states, List<Rule> grammar,
+            Map<String, Terminal> terminals) {
+        this.terminals = terminals;
+
+        for (Rule rule : grammar) {
+            List<Rule> lhsRules = rules.get(rule.getLhs().getName());
+
+            if (lhsRules == null) {
+                lhsRules = new ArrayList<Rule>();
+                rules.put(rule.getLhs().getName(), lhsRules);
+            }
+
+            lhsRules.add(rule);
+        }
+
+        BitSet[] directReads = initTransitions(states);
+
+        initNullable(grammar);
+
+        BitSet[] read = digraph(getReads(), directReads);
+        follow = digraph(getIncludes(states.size()), read);
+    }
+
+    /**
+     * Returns the lookaheads of a reduction.
+     * 
+     * @param state
+     *            State which contains the reduction
+     * @param rule
+     *            The reduced rule
+     * @return Numbers of the lookahead terminals
+     */
+    public BitSet getLookaheads(State state, Rule rule) {
+        BitSet lookaheads = new BitSet();
+        List<Integer> lookback = lookbacks.get(state.getId()).get(rule);
+
+        if (lookback != null) {
+            for (int transition : lookback) {
+                lookaheads.or(follow[transition]);
+            }
+        }
+
+        return lookaheads;
+    }
+
+    /**
+     * Collects the transitions of all states from the actions of their items
+     * and numbers the non-terminal transitions.
+     * 
+     * @param states
+     *            States of the automaton
+     * @return The terminals which are read directly after each non-terminal
+     *         transition
+     */
+    private BitSet[] initTransitions(List<State> states) {
+        List<BitSet> stateReads = new ArrayList<BitSet>(states.size());
+
+        successors = new ArrayList<Map<String, Integer>>(states.size());
+        transitions = new ArrayList<Map<String, Integer>>(states.size());
+        lookbacks = new ArrayList<Map<Rule, List<Integer>>>(states.size());
+
+        for (State state : states) {
+            Map<String, Integer> stateSuccessors = new HashMap<String, Integer>();
+            Map<String, Integer> stateTransitions = new HashMap<String, Integer>();
+            BitSet reads = new BitSet();
+
+            for (Item item : state.getItems()) {
+                Action action = item.getAction();
+
+                switch (action.getType()) {
+                    case Shift:
+                        reads.set(terminals.get(
+                                item.getCurrentSymbol().getName())
+                                .getTerminalNumber());
+                        stateSuccessors.put(item.getCurrentSymbol().getName(),
+                                action.getIndex());
+                        break;
+
+                    case Accept:
+                        reads.set(terminals.get(
+                                item.getCurrentSymbol().getName())
+                                .getTerminalNumber());
+                        break;
+
+                    case Goto:
+                        String symbol = item.getCurrentSymbol().getName();
+                        stateSuccessors.put(symbol, action.getIndex());
+
+                        if (!stateTransitions.containsKey(symbol)) {
+                            stateTransitions.put(symbol, transitionStates
+                                    .size());
+                            transitionStates.add(state.getId());
+                            transitionSymbols.add(symbol);
+                        }
+                        break;
+                }
+            }
+
+            stateReads.add(reads);
+            successors.add(stateSuccessors);
+            transitions.add(stateTransitions);
+            lookbacks.add(new HashMap<Rule, List<Integer>>());
+        }
+
+        BitSet[] directReads = new BitSet[transitionStates.size()];
+
+        for (int i = 0; i < directReads.length; i++) {
+            directReads[i] = (BitSet) stateReads.get(
+                    getSuccessor(transitionStates.get(i), transitionSymbols
+                            .get(i))).clone();
+        }
+
+        return directReads;
+    }
+
+    /**
+     * Determines the non-terminals which derive the empty string.
+     * 
+     * @param grammar
+     *            Rules of the grammar
+     */
+    private void initNullable(List<Rule> grammar) {
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (Rule rule : grammar) {
+                String lhs = rule.getLhs().getName();
+
+                if (!nullable.contains(lhs) && isNullable(rule, 0)) {
+                    nullable.add(lhs);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the right-hand side of a rule derives the empty string
+     * from a position on.
+     * 
+     * @param rule
+     *            A rule
+     * @param position
+     *            Position of the first symbol
+     * @return True, if all symbols from {@code position} on are nullable
+     */
+    private boolean isNullable(Rule rule, int position) {
+        for (int i = position; i < rule.getRhsCount(); i++) {
+            if (!nullable.contains(rule.getRhs(i).getName())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Computes the reads relation: (p, A) reads (r, C) if r is the successor
+     * of p on A and C is nullable.
+     * 
+     * @return The relation per non-terminal transition
+     */
+    private List<List<Integer>> getReads() {
+        List<List<Integer>> reads = new ArrayList<List<Integer>>();
+
+        for (int i = 0; i < transitionStates.size(); i++) {
+            List<Integer> related = new ArrayList<Integer>();
+            int successor = getSuccessor(transitionStates.get(i),
+                    transitionSymbols.get(i));
+
+            for (Map.Entry<String, Integer> e : transitions.get(successor)
+                    .entrySet()) {
+                if (nullable.contains(e.getKey())) {
+                    related.add(e.getValue());
+                }
+            }
+
+            reads.add(related);
+        }
+
+        return reads;
+    }
+
+    /**
+     * Computes the includes relation and the lookbacks. (p, A) includes
+     * (p', B) if there is a rule B: x A y where y is nullable and p is reached
+     * from p' by reading x. A reduction of a rule B: w in state q looks back
+     * to (p', B) if q is reached from p' by reading w.
+     * 
+     * @param stateCount
+     *            Count of states
+     * @return The includes relation per non-terminal transition
+     */
+    private List<List<Integer>> getIncludes(int stateCount) {
+        List<List<Integer>> includes = new ArrayList<List<Integer>>();
+
+        for (int i = 0; i < transitionStates.size(); i++) {
+            includes.add(new ArrayList<Integer>());
+        }
+
+        for (int i = 0; i < transitionStates.size(); i++) {
+            List<Rule> lhsRules = rules.get(transitionSymbols.get(i));
+
+            if (lhsRules == null) {
+                continue;
+            }
+
+            for (Rule rule : lhsRules) {
+                int state = transitionStates.get(i);
+
+                for (int j = 0; j < rule.getRhsCount() && state != -1; j++) {
+                    String symbol = rule.getRhs(j).getName();
+                    Integer transition = transitions.get(state).get(symbol);
+
+                    if (transition != null && isNullable(rule, j + 1)) {
+                        includes.get(transition).add(i);
+                    }
+
+                    state = getSuccessor(state, symbol);
+                }
+
+                if (state != -1) {
+                    List<Integer> lookback = lookbacks.get(state).get(rule);
+
+                    if (lookback == null) {
+                        lookback = new ArrayList<Integer>();
+                        lookbacks.get(state).put(rule, lookback);
+                    }
+
+                    lookback.add(i);
+                }
+            }
+        }
+
+        return includes;
+    }
+
+    /**
+     * Returns the successor of a state.
+     * 
+     * @param state
+     *            A state
+     * @param symbol
+     *            Name of a symbol
+     * @return The successor or -1 if there is no transition on {@code symbol}
+     */
+    private int getSuccessor(int state, String symbol) {
+        Integer successor = successors.get(state).get(symbol);
+
+        return successor == null ? -1 : successor;
+    }
+
+    /**
+     * Computes F(x) = F'(x) united with F(y) for all y related to x. Strongly
+     * connected components of the relation are assigned the same set.
+     * 
+     * @param relation
+     *            Related elements per element
+     * @param initial
+     *            F'(x) per element
+     * @return F(x) per element
+     */
+    private BitSet[] digraph(List<List<Integer>> relation, BitSet[] initial) {
+        BitSet[] result = new BitSet[initial.length];
+        int[] depth = new int[initial.length];
+        int[] stack = new int[initial.length];
+        int[] top = new int[] { 0 };
+
+        for (int x = 0; x < initial.length; x++) {
+            if (depth[x] == 0) {
+                traverse(x, relation, initial, result, depth, stack, top);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Traverses the relation depth-first from an element.
+     */
+    private void traverse(int x, List<List<Integer>> relation,
+            BitSet[] initial, BitSet[] result, int[] depth, int[] stack,
+            int[] top) {
+        int d;
+
+        stack[top[0]++] = x;
+        d = top[0];
+        depth[x] = d;
+        result[x] = (BitSet) initial[x].clone();
+
+        for (int y : relation.get(x)) {
+            if (depth[y] == 0) {
+                traverse(y, relation, initial, result, depth, stack, top);
+            }
+
+            depth[x] = Math.min(depth[x], depth[y]);
+            result[x].or(result[y]);
+        }
+
+        if (depth[x] == d) {
+            int y;
+
+            do {
+                y = stack[--top[0]];
+                depth[y] = Integer.MAX_VALUE;
+                result[y] = result[x];
+            } while (y != x);
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A sparse table compressed by row displacement.
+ * <p>
+ * Every row has a default value. The remaining entries of all rows are stored
+ * in the shared arrays {@code next} and {@code check}, with each row starting
+ * at its own base offset. {@code check} contains the column of an entry, i.e.
+ * a value is looked up as follows:
+ * 
+ * <pre>
+ * i = base[row] + column;
+ * value = check[i] == column ? next[i] : defaults[row];
+ * </pre>
+ * 
+ * Since {@code check} contains columns instead of rows, rows with the same
+ * entries share a base, whereas different rows must have different bases.
+ */
+public class PackedTable {
+
+    /** Marks an unused slot in check */
+    public static final int EMPTY = -1;
+
+    /** Offset of each row in next and check */
+    private int[] base;
+
+    /** Default value of each row */
+    private int[] defaults;
+
+    /** Column of the entry stored in a slot */
+    private int[] check;
+
+    /** Value of the entry stored in a slot */
+    private int[] next;
+
+    /**
+     * Compresses a table.
+     * 
+     * @param table
+     *            The table to compress, all rows must be of the same length
+     * @param defaults
+     *            Default value of each row. Entries which are equal to the
+     *            default of their row are not stored.
+     */
+    public PackedTable(final int[][] table, int[] defaults) {
+        int cols = table.length > 0 ? table[0].length : 0;
+        Map<String, Integer> rowBases = new HashMap<String, Integer>();
+        Set<Integer> usedBases = new HashSet<Integer>();
+        List<Integer> slots = new ArrayList<Integer>();
+        Integer[] order = new Integer[table.length];
+        int firstFree = 0;
+        int length = 0;
+
+        this.defaults = defaults;
+        base = new int[table.length];
+
+        for (int r = 0; r < table.length; r++) {
+            order[r] = r;
+        }
+
+        /* Place the densest rows first, they are the hardest to fit */
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer r1, Integer r2) {
+                return getEntryCount(r2) - getEntryCount(r1);
+            }
+
+            private int getEntryCount(Integer row) {
+                int count = 0;
+
+                for (int c = 0; c < table[row].length; c++) {
+                    if (table[row][c] != PackedTable.this.defaults[row]) {
+                        count++;
+                    }
+                }
+
+                return count;
+            }
+        });
+
+        for (int r : order) {
+            List<Integer> columns = new ArrayList<Integer>();
+            StringBuilder key = new StringBuilder();
+
+            for (int c = 0; c < cols; c++) {
+                if (table[r][c] != defaults[r]) {
+                    columns.add(c);
+                    key.append(c).append('=').append(table[r][c]).append(',');
+                }
+            }
+
+            Integer rowBase = rowBases.get(key.toString());
+
+            if (rowBase == null) {
+                rowBase = findBase(columns, slots, usedBases, firstFree);
+                rowBases.put(key.toString(), rowBase);
+                usedBases.add(rowBase);
+
+                for (int c : columns) {
+                    while (slots.size() <= rowBase + c) {
+                        slots.add(null);
+                    }
+                    slots.set(rowBase + c, table[r][c]);
+                }
+
+                while (firstFree < slots.size()
+                        && slots.get(firstFree) != null) {
+                    firstFree++;
+                }
+            }
+
+            base[r] = rowBase;
+            length = Math.max(length, rowBase + cols);
+        }
+
+        /* Every lookup base[row] + column must stay within the arrays */
+        check = new int[length];
+        next = new int[length];
+
+        Arrays.fill(check, EMPTY);
+
+        for (int r = 0; r < table.length; r++) {
+            for (int c = 0; c < cols; c++) {
+                if (table[r][c] != defaults[r]) {
+                    check[base[r] + c] = c;
+                    next[base[r] + c] = table[r][c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches the lowest unused base at which all columns of a row hit free
+     * slots.
+     * 
+     * @param columns
+     *            Columns of the row's entries
+     * @param slots
+     *            Occupied slots
+     * @param usedBases
+     *            Bases of other rows
+     * @param firstFree
+     *            Index of the first free slot
+     * @return A base
+     */
+    private int findBase(List<Integer> columns, List<Integer> slots,
+            Set<Integer> usedBases, int firstFree) {
+        /* The first column can't be placed before the first free slot */
+        int b = columns.isEmpty() ? 0 : Math.max(0, firstFree
+                - columns.get(0));
+
+        base:
+        for (;; b++) {
+            if (usedBases.contains(b)) {
+                continue;
+            }
+
+            for (int c : columns) {
+                if (b + c < slots.size() && slots.get(b + c) != null) {
+                    continue base;
+                }
+            }
+
+            return b;
+        }
+    }
+
+    public int[] getBase() {
+        return base;
+    }
+
+    public int[] getDefaults() {
+        return defaults;
+    }
+
+    public int[] getCheck() {
+        return check;
+    }
+
+    public int[] getNext() {
+        return next;
+    }
+
+}
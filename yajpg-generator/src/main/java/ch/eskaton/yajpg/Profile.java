@@ -0,0 +1,235 @@
+/*
+ *  Copyright (c) 2009, Adrian Moser
+ *  All rights reserved.
+ * 
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions are met:
+ *  * Redistributions of source code must retain the above copyright
+ *  notice, this list of conditions and the following disclaimer.
+ *  * Redistributions in binary form must reproduce the above copyright
+ *  notice, this list of conditions and the following disclaimer in the
+ *  documentation and/or other materials provided with the distribution.
+ *  * Neither the name of the author nor the
+ *  names of its contributors may be used to endorse or promote products
+ *  derived from this software without specific prior written permission.
+ * 
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ *  ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL AUTHOR BE LIABLE FOR ANY
+ *  DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ *  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ *  ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ *  SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package ch.eskaton.yajpg;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts which have been recorded by a generated parser and lexer in the
+ * profiling mode.
+ * <p>
+ * A profile consists of lines of the following form:
+ * 
+ * <pre>
+ * parser &lt;states&gt; &lt;columns&gt;
+ * action &lt;state&gt; &lt;column&gt; &lt;count&gt;
+ * range &lt;from&gt; &lt;to&gt; &lt;count&gt;
+ * </pre>
+ * 
+ * The first line contains the size of the action table, an action line the
+ * number of lookups of an action and a range line the number of characters
+ * which have been matched by a character range of the lexer. The counts of
+ * the same action or range are summed up, so the profiles of several runs
+ * may be appended to the same file.
+ */
+public class Profile {
+
+    /** Count of states in the action table, -1 without parser profile */
+    private int states = -1;
+
+    /** Count of columns in the action table */
+    private int columns;
+
+    /** Lookups of the actions by state and column */
+    private Map<Long, Long> actionCounts = new HashMap<Long, Long>();
+
+    /** Matches of the character ranges by their bounds */
+    private Map<Long, Long> rangeCounts = new HashMap<Long, Long>();
+
+    /**
+     * Reads a profile.
+     * 
+     * @param file
+     *            Name of the profile
+     * @throws IOException
+     * @throws ConfigException
+     *             if the profile is malformed
+     */
+    public Profile(String file) throws IOException, ConfigException {
+        BufferedReader br = new BufferedReader(new FileReader(file));
+        String line;
+        int lineNumber = 0;
+
+        try {
+            while ((line = br.readLine()) != null) {
+                String[] fields = line.trim().split("\\s+");
+                lineNumber++;
+
+                if (fields.length == 1 && fields[0].length() == 0) {
+                    continue;
+                }
+
+                try {
+                    if ("parser".equals(fields[0]) && fields.length == 3) {
+                        int s = Integer.parseInt(fields[1]);
+                        int c = Integer.parseInt(fields[2]);
+
+                        if (states != -1 && (states != s || columns != c)) {
+                            throw new ConfigException(
+                                    "profile of different parsers in " + file
+                                            + ", line " + lineNumber);
+                        }
+
+                        states = s;
+                        columns = c;
+                    } else if ("action".equals(fields[0])
+                            && fields.length == 4) {
+                        add(actionCounts, Integer.parseInt(fields[1]), Integer
+                                .parseInt(fields[2]), Long
+                                .parseLong(fields[3]));
+                    } else if ("range".equals(fields[0])
+                            && fields.length == 4) {
+                        add(rangeCounts, Integer.parseInt(fields[1]), Integer
+                                .parseInt(fields[2]), Long
+                                .parseLong(fields[3]));
+                    } else {
+                        throw new ConfigException("invalid line "
+                                + lineNumber + " in profile " + file);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new ConfigException("invalid number in line "
+                            + lineNumber + " of profile " + file, e);
+                }
+            }
+        } finally {
+            br.close();
+        }
+
+        if (!actionCounts.isEmpty() && states == -1) {
+            throw new ConfigException("size of the action table missing in "
+                    + "profile " + file);
+        }
+    }
+
+    /**
+     * Adds a count to a map.
+     * 
+     * @param counts
+     *            The counts by key
+     * @param i
+     *            First part of the key
+     * @param j
+     *            Second part of the key
+     * @param count
+     *            The count to add
+     */
+    private static void add(Map<Long, Long> counts, int i, int j, long count) {
+        Long key = getKey(i, j);
+        Long sum = counts.get(key);
+
+        counts.put(key, sum == null ? count : sum + count);
+    }
+
+    /**
+     * Combines a state and a column or the bounds of a range to a key.
+     */
+    private static Long getKey(int i, int j) {
+        return ((long) i << 32) | (j & 0xffffffffL);
+    }
+
+    /**
+     * Returns whether the profile contains the counts of a parser.
+     * 
+     * @return true, if the profile contains action counts
+     */
+    public boolean hasParser() {
+        return states != -1;
+    }
+
+    /**
+     * Returns the count of states of the profiled parser.
+     * 
+     * @return Count of states
+     */
+    public int getStates() {
+        return states;
+    }
+
+    /**
+     * Returns the count of columns in the action table of the profiled
+     * parser.
+     * 
+     * @return Count of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of lookups of an action.
+     * 
+     * @param state
+     *            The state
+     * @param column
+     *            Column in the action table
+     * @return Number of lookups
+     */
+    public long getActionCount(int state, int column) {
+        Long count = actionCounts.get(getKey(state, column));
+
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Returns the number of visits of a state, i.e. the number of lookups of
+     * its actions.
+     * 
+     * @param state
+     *            The state
+     * @return Number of visits
+     */
+    public long getStateCount(int state) {
+        long count = 0;
+
+        for (int c = 0; c < columns; c++) {
+            count += getActionCount(state, c);
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of characters which have been matched by a
+     * character range of the lexer.
+     * 
+     * @param from
+     *            First character of the range
+     * @param to
+     *            Last character of the range
+     * @return Number of matches
+     */
+    public long getRangeCount(int from, int to) {
+        Long count = rangeCounts.get(getKey(from, to));
+
+        return count == null ? 0 : count;
+    }
+
+}
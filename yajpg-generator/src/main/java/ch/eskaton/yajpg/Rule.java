@@ -193,6 +193,33 @@ public class Rule implements Comparable<Rule> {
         return sb.toString();
     }
 
+    /**
+     * Returns true if the rule contains code.
+     * 
+     * @return True if the rule contains code
+     */
+    public boolean hasCode() {
+        return code != null && code.trim().length() > 0;
+    }
+
+    /**
+     * Returns true if the code of this rule passes the value of the first
+     * symbol on unchanged, i.e. if there is no code or it only assigns $1 to
+     * $$.
+     * 
+     * @return True if the rule passes its first symbol on
+     */
+    public boolean isPassThrough() {
+        if (code == null) {
+            return true;
+        }
+
+        String statement = code.replaceAll("\\s", "");
+
+        return statement.length() == 0 || statement.equals("$$=$1;")
+                || statement.equals("$$=$1");
+    }
+
     public Set<Integer> getUsedVariables(int varCount) {
         Set<Integer> indices = new HashSet<Integer>();
 
@@ -36,6 +36,7 @@ import org.apache.maven.project.MavenProject;
 
 import ch.eskaton.yajpg.ConfigException;
 import ch.eskaton.yajpg.Generator;
+import ch.eskaton.yajpg.ParserMode;
 
 /**
  * Generates a parser class.
@@ -60,6 +61,35 @@ public class YajpgMojo extends AbstractMojo {
      */
     private boolean generateLexer;
 
+    /**
+     * Name of the parser class. Overrides parser-class in the grammar file.
+     * 
+     * @parameter
+     */
+    private String parserClass;
+
+    /**
+     * Kind of parser to generate: table or direct. Overrides parser-mode in
+     * the grammar file.
+     * 
+     * @parameter
+     */
+    private String parserMode;
+
+    /**
+     * Generate code which records a profile?
+     * 
+     * @parameter default="false"
+     */
+    private boolean profiling;
+
+    /**
+     * Profile to optimise the generated code for.
+     * 
+     * @parameter
+     */
+    private String profileFile;
+
     /**
      * Write debugging output?
      * 
@@ -97,6 +127,26 @@ public class YajpgMojo extends AbstractMojo {
             }
 
             Generator gen = new Generator(grammarFile);
+
+            if (parserClass != null) {
+                gen.setParserClass(parserClass);
+            }
+
+            if (parserMode != null) {
+                try {
+                    gen.setParserMode(ParserMode.valueOf(parserMode
+                            .toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new MojoFailureException("Invalid parser mode "
+                            + parserMode);
+                }
+            }
+
+            if (profileFile != null) {
+                gen.setProfile(profileFile);
+            }
+
+            gen.setProfiling(profiling);
             gen.run(sourcePath, generateLexer);
 
             if (debugging) {